@@ -0,0 +1,166 @@
+package com.example.customgridview;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * beginBatch()/commit()之间的多次修改只产生一次刷新请求、一次测量和一次摆放
+ * gridView不附加到窗口，由测试直接执行测量、摆放，相当于一帧
+ */
+@RunWith(AndroidJUnit4.class)
+public class GridBatchUpdateTest {
+
+    private static final int WIDTH = 1080;
+
+    private WonderfulGridView grid;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        grid = new WonderfulGridView(context);
+        grid.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+    }
+
+    @Test
+    @UiThreadTest
+    public void batchedMutationsRefreshOnce() {
+        grid.setResponseMode(2);
+        grid.addChildrenView(items("a", 12));
+        runFrame();
+
+        int refreshCount = grid.getRefreshCount();
+        int measureCount = grid.getMeasureCount();
+        int layoutCount = grid.getLayoutCount();
+        grid.beginBatch();
+        grid.appendItems(items("b", 4));
+        grid.setColumn(3);
+        grid.setGap(4, 4);
+        grid.setGridPadding(6);
+        grid.setGridTextSize(14);
+        grid.setSelectItem(1);
+        grid.setSelectItem(5);
+        //批量更新期间不会发出刷新请求
+        assertEquals(refreshCount, grid.getRefreshCount());
+        grid.commit();
+
+        assertEquals(refreshCount + 1, grid.getRefreshCount());
+        assertTrue(grid.isLayoutRequested());
+        runFrame();
+        assertEquals(measureCount + 1, grid.getMeasureCount());
+        assertEquals(layoutCount + 1, grid.getLayoutCount());
+        assertEquals(16, grid.getChildCount());
+        assertTrue(grid.isItemSelected(1));
+        assertTrue(grid.isItemSelected(5));
+    }
+
+    @Test
+    @UiThreadTest
+    public void nestedBatchRefreshesOnOutermostCommit() {
+        grid.addChildrenView(items("a", 8));
+        runFrame();
+
+        int refreshCount = grid.getRefreshCount();
+        grid.beginBatch();
+        grid.setColumn(2);
+        grid.beginBatch();
+        grid.setColumn(3);
+        grid.commit();
+        assertEquals(refreshCount, grid.getRefreshCount());
+        assertTrue(grid.isInBatch());
+        grid.commit();
+        assertFalse(grid.isInBatch());
+        assertEquals(refreshCount + 1, grid.getRefreshCount());
+    }
+
+    @Test
+    @UiThreadTest
+    public void unbatchedMutationsRefreshEachTime() {
+        grid.addChildrenView(items("a", 8));
+        runFrame();
+
+        int refreshCount = grid.getRefreshCount();
+        grid.setColumn(3);
+        grid.setGap(4, 4);
+        grid.setGridPadding(6);
+        assertEquals(refreshCount + 3, grid.getRefreshCount());
+    }
+
+    @Test
+    @UiThreadTest
+    public void selectionOnlyBatchDoesNotRelayout() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        GridStyle style = new GridStyle.Builder()
+                .setResponseMode(2)
+                .setTextColors(Color.RED, Color.BLACK)
+                .setSelectAnimation(0, 1f)
+                .build();
+        grid = new WonderfulGridView(context, style);
+        grid.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        grid.addChildrenView(items("a", 8));
+        runFrame();
+
+        int refreshCount = grid.getRefreshCount();
+        grid.update(new Runnable() {
+            @Override
+            public void run() {
+                grid.setSelectItem(0);
+                grid.setSelectItem(3);
+                grid.clearSelectItem(0);
+                //批量更新期间读取选中状态，提交时仍然要更新子view的样式
+                assertTrue(grid.isItemSelected(3));
+                grid.setSelectItem(5);
+            }
+        });
+
+        //只修改了选中状态，提交时直接设置样式，不需要重新测量
+        assertEquals(refreshCount, grid.getRefreshCount());
+        assertFalse(grid.isLayoutRequested());
+        assertFalse(grid.isItemSelected(0));
+        assertTrue(grid.isItemSelected(3));
+        assertTrue(grid.isItemSelected(5));
+        assertEquals(Color.BLACK, textColorOf(0));
+        assertEquals(Color.RED, textColorOf(3));
+        assertEquals(Color.RED, textColorOf(5));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    @UiThreadTest
+    public void commitWithoutBeginThrows() {
+        grid.commit();
+    }
+
+    //测量、摆放一次，相当于一帧
+    private void runFrame() {
+        grid.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        grid.layout(0, 0, grid.getMeasuredWidth(), grid.getMeasuredHeight());
+    }
+
+    private int textColorOf(int position) {
+        return ((TextView) grid.getChildAt(position)).getCurrentTextColor();
+    }
+
+    private static List<String> items(String prefix, int count) {
+        List<String> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(prefix + i);
+        }
+        return items;
+    }
+}
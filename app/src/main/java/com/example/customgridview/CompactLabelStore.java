@@ -0,0 +1,280 @@
+package com.example.customgridview;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-11-5
+ *  @Version 1.0
+ *  @Description 紧凑的内容存储，所有内容连续存放在一个共用的char数组中
+ */
+public class CompactLabelStore extends AbstractList<String> implements RandomAccess {
+
+    //估算内存占用使用的对象头和引用大小
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int STRING_SIZE = 24;
+
+    private final boolean intern;
+    //所有内容连续存放
+    private char[] buffer = new char[256];
+    private int bufferSize;
+    //每一项在buffer中的起点和长度，长度为-1表示null
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int size;
+    //去重用的哈希表，线性探测，保存内容在buffer中的起点+1和长度，0表示空
+    private int[] table;
+    private int[] tableLengths;
+    private int uniqueCount;
+
+    /**
+     * @param intern 是否对内容相同的项去重
+     */
+    public CompactLabelStore(boolean intern) {
+        this.intern = intern;
+        if (intern){
+            table = new int[32];
+            tableLengths = new int[32];
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    //会创建String，只在需要String的地方使用，例如点击回调
+    @Override
+    public String get(int index) {
+        checkIndex(index);
+        return lengths[index] < 0 ? null : new String(buffer,starts[index],lengths[index]);
+    }
+
+    //不复制字符的视图，clear之后失效
+    public CharSequence getLabel(int index) {
+        checkIndex(index);
+        return lengths[index] < 0 ? null : new Label(starts[index],lengths[index]);
+    }
+
+    //是否为null，不创建String和视图
+    public boolean isNull(int index) {
+        checkIndex(index);
+        return lengths[index] < 0;
+    }
+
+    //内容是否和text相同，不创建String和视图，用于绑定时判断内容是否变化
+    public boolean labelEquals(int index, CharSequence text) {
+        checkIndex(index);
+        if (text == null || lengths[index] < 0)return text == null && lengths[index] < 0;
+        return contentEquals(starts[index],lengths[index],text);
+    }
+
+    //只能追加到末尾
+    @Override
+    public void add(int index, String element) {
+        if (index != size){
+            throw new UnsupportedOperationException("CompactLabelStore只能追加到末尾！！！");
+        }
+        append(element);
+    }
+
+    public void append(CharSequence text) {
+        if (size == starts.length){
+            starts = Arrays.copyOf(starts,size * 2);
+            lengths = Arrays.copyOf(lengths,size * 2);
+        }
+        modCount++;
+        if (text == null){
+            starts[size] = 0;
+            lengths[size] = -1;
+        }else {
+            starts[size] = store(text);
+            lengths[size] = text.length();
+        }
+        size++;
+    }
+
+    //替换一项，已经获取的getLabel视图仍然是旧内容
+    @Override
+    public String set(int index, String element) {
+        String old = get(index);
+        if (element == null){
+            starts[index] = 0;
+            lengths[index] = -1;
+        }else {
+            starts[index] = store(element);
+            lengths[index] = element.length();
+        }
+        return old;
+    }
+
+    //保存内容的字符，返回在buffer中的起点，去重时内容相同的直接使用已有的字符
+    private int store(CharSequence text) {
+        int length = text.length();
+        int slot = 0;
+        if (intern){
+            slot = hash(text) & (table.length - 1);
+            while (table[slot] != 0){
+                if (contentEquals(table[slot] - 1,tableLengths[slot],text)){
+                    //和已有的项共用同一段字符
+                    return table[slot] - 1;
+                }
+                slot = (slot + 1) & (table.length - 1);
+            }
+        }
+        if (bufferSize + length > buffer.length){
+            buffer = Arrays.copyOf(buffer,Math.max(buffer.length * 2,bufferSize + length));
+        }
+        for (int i=0; i<length; i++){
+            buffer[bufferSize + i] = text.charAt(i);
+        }
+        int start = bufferSize;
+        bufferSize += length;
+        if (intern){
+            table[slot] = start + 1;
+            tableLengths[slot] = length;
+            uniqueCount++;
+            //负载因子不超过0.5
+            if (uniqueCount * 2 > table.length){
+                rehash(table.length * 2);
+            }
+        }
+        return start;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        size = 0;
+        bufferSize = 0;
+        uniqueCount = 0;
+        if (table != null){
+            Arrays.fill(table,0);
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] old = table;
+        int[] oldLengths = tableLengths;
+        table = new int[capacity];
+        tableLengths = new int[capacity];
+        for (int i=0; i<old.length; i++){
+            if (old[i] == 0)continue;
+            int slot = hash(old[i] - 1,oldLengths[i]) & (capacity - 1);
+            while (table[slot] != 0){
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = old[i];
+            tableLengths[slot] = oldLengths[i];
+        }
+    }
+
+    private boolean contentEquals(int start, int length, CharSequence text) {
+        if (length != text.length())return false;
+        for (int i=0; i<length; i++){
+            if (buffer[start + i] != text.charAt(i))return false;
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence text) {
+        int hash = 0;
+        for (int i=0; i<text.length(); i++){
+            hash = 31 * hash + text.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    private int hash(int start, int length) {
+        int hash = 0;
+        for (int i=0; i<length; i++){
+            hash = 31 * hash + buffer[start + i];
+        }
+        return mix(hash);
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    //去重后共用字符的项数，替换过的项较多时只是估算
+    public int getInternedCount() {
+        return intern ? Math.max(0,size - uniqueCount) : 0;
+    }
+
+    //估算占用的内存，单位字节
+    public long getMemoryFootprint() {
+        long bytes = OBJECT_HEADER + 7 * REFERENCE;
+        bytes += align(ARRAY_HEADER + 2L * buffer.length);
+        bytes += 2 * align(ARRAY_HEADER + 4L * starts.length);
+        if (table != null){
+            bytes += 2 * align(ARRAY_HEADER + 4L * table.length);
+        }
+        return bytes;
+    }
+
+    //估算普通List保存相同内容占用的内存，用于比较，同一个String对象只计算一次
+    public static long estimateFootprint(List<? extends CharSequence> list) {
+        long bytes = align(OBJECT_HEADER + 2 * REFERENCE) + align(ARRAY_HEADER + (long) REFERENCE * list.size());
+        CharSequence previous = null;
+        for (int i=0; i<list.size(); i++){
+            CharSequence text = list.get(i);
+            if (text == null || text == previous)continue;
+            bytes += STRING_SIZE + align(ARRAY_HEADER + 2L * text.length());
+            previous = text;
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    //buffer中一段字符的视图
+    private class Label implements CharSequence {
+        private final int start;
+        private final int length;
+
+        Label(int start, int length) {
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length){
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+            }
+            return buffer[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end){
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+            }
+            return new Label(this.start + start,end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer,start,length);
+        }
+    }
+}
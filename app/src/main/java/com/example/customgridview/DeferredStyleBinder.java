@@ -0,0 +1,233 @@
+package com.example.customgridview;
+
+import android.graphics.Rect;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.ViewTreeObserver;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-9-8
+ *  @Version 1.0
+ *  @Description 延迟绑定样式，不可见行的背景、字体颜色等样式在空闲时间按滑动方向提前绑定
+ *  子view的创建、绑定内容和测量仍然在onMeasure中同步完成，因为所有子view统一大小，需要全部测量
+ */
+public class DeferredStyleBinder implements MessageQueue.IdleHandler, Choreographer.FrameCallback, ViewTreeObserver.OnScrollChangedListener {
+
+    //默认每帧的时间预算4ms
+    private static final long DEFAULT_FRAME_BUDGET_NS = 4000000L;
+    //默认帧间隔，60Hz
+    private static final long DEFAULT_FRAME_INTERVAL_NS = 16666667L;
+
+    private final SimpleCustomGridView grid;
+    private final Rect visibleRect = new Rect();
+
+    private int aheadRows;                                      //滑动方向上提前绑定样式的行数
+    private long frameBudgetNs = DEFAULT_FRAME_BUDGET_NS;       //每帧空闲时间内最多使用的时间
+    private long frameIntervalNs = DEFAULT_FRAME_INTERVAL_NS;   //帧间隔
+    private long lastFrameTimeNs;                               //最近一帧的开始时间
+    private long rowCostNs;                                     //绑定一行样式的平均耗时，用于判断剩余时间是否足够
+
+    //当前可见的行，-1表示未知
+    private int firstVisibleRow = -1;
+    private int lastVisibleRow = -1;
+    private int lastVisibleTop;
+    //滑动方向 1：向下 -1：向上
+    private int direction = 1;
+    //待绑定样式的行区间[pendingFrom,pendingTo]，按滑动方向推进
+    private int pendingFrom = -1;
+    private int pendingTo = -1;
+
+    private boolean attached;
+    private boolean idleScheduled;
+    private boolean frameScheduled;
+
+    //统计数据
+    private int idleBoundRows;      //空闲时间内绑定样式的行数
+    private int hitRows;            //露出时样式已经绑定好的行数
+    private int missRows;           //露出时样式还没有绑定，只能同步绑定的行数
+
+    DeferredStyleBinder(SimpleCustomGridView grid, int aheadRows) {
+        this.grid = grid;
+        this.aheadRows = aheadRows;
+    }
+
+    //设置滑动方向上提前绑定样式的行数
+    public void setAheadRows(int aheadRows) {
+        this.aheadRows = Math.max(0,aheadRows);
+    }
+
+    public int getAheadRows() {
+        return aheadRows;
+    }
+
+    //设置每帧的时间预算，单位纳秒
+    public void setFrameBudgetNs(long frameBudgetNs) {
+        this.frameBudgetNs = Math.max(0,frameBudgetNs);
+    }
+
+    public long getFrameBudgetNs() {
+        return frameBudgetNs;
+    }
+
+    //空闲时间内绑定样式的行数
+    public int getIdleBoundRows() {
+        return idleBoundRows;
+    }
+
+    public int getHitRows() {
+        return hitRows;
+    }
+
+    public int getMissRows() {
+        return missRows;
+    }
+
+    //命中率：滑动露出的行中，样式已经提前绑定好的比例
+    public float getHitRate() {
+        int total = hitRows + missRows;
+        return total == 0 ? 0f : (float) hitRows / total;
+    }
+
+    //清空统计数据
+    public void resetMetrics() {
+        idleBoundRows = 0;
+        hitRows = 0;
+        missRows = 0;
+    }
+
+    //该行是否在可见区域内，可见区域的行在创建子view时直接绑定样式
+    boolean isRowVisible(int row) {
+        if (firstVisibleRow < 0)return row == 0;
+        return row >= firstVisibleRow && row <= lastVisibleRow;
+    }
+
+    void attach() {
+        if (attached)return;
+        attached = true;
+        Display display = grid.getDisplay();
+        if (display != null && display.getRefreshRate() > 0){
+            frameIntervalNs = (long) (1000000000L / display.getRefreshRate());
+        }
+        grid.getViewTreeObserver().addOnScrollChangedListener(this);
+    }
+
+    void detach() {
+        if (!attached)return;
+        attached = false;
+        grid.getViewTreeObserver().removeOnScrollChangedListener(this);
+        if (idleScheduled){
+            Looper.myQueue().removeIdleHandler(this);
+            idleScheduled = false;
+        }
+        if (frameScheduled){
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    //gridView摆放完成，子view可能已经全部重新创建，重新计算可见行
+    void onGridLayout() {
+        firstVisibleRow = -1;
+        lastVisibleRow = -1;
+        updateVisibleRows(false);
+    }
+
+    @Override
+    public void onScrollChanged() {
+        updateVisibleRows(true);
+    }
+
+    /**
+     * 计算可见行，露出的行如果还没有绑定样式则同步绑定，并按滑动方向安排接下来的行
+     * @param countReveal 是否统计命中率，首次摆放时露出的行不计入
+     */
+    private void updateVisibleRows(boolean countReveal) {
+        int rowCount = grid.getRowCount();
+        if (rowCount == 0 || !grid.getLocalVisibleRect(visibleRect))return;
+        int first = grid.getRowAt(visibleRect.top);
+        int last = grid.getRowAt(visibleRect.bottom - 1);
+        if (first == firstVisibleRow && last == lastVisibleRow)return;
+
+        if (firstVisibleRow >= 0 && visibleRect.top != lastVisibleTop){
+            direction = visibleRect.top > lastVisibleTop ? 1 : -1;
+        }
+        for (int row=first; row<=last; row++){
+            //之前就可见的行不需要处理
+            if (firstVisibleRow >= 0 && row >= firstVisibleRow && row <= lastVisibleRow)continue;
+            boolean wasBound = !grid.bindRow(row);
+            if (countReveal){
+                if (wasBound){
+                    hitRows++;
+                }else {
+                    missRows++;
+                }
+            }
+        }
+        firstVisibleRow = first;
+        lastVisibleRow = last;
+        lastVisibleTop = visibleRect.top;
+
+        //按滑动方向安排接下来的N行
+        if (aheadRows <= 0)return;
+        if (direction > 0){
+            pendingFrom = last + 1;
+            pendingTo = Math.min(rowCount - 1,last + aheadRows);
+        }else {
+            pendingFrom = first - 1;
+            pendingTo = Math.max(0,first - aheadRows);
+        }
+        scheduleIdle();
+    }
+
+    private boolean hasPendingRows() {
+        if (pendingFrom < 0 || pendingFrom >= grid.getRowCount())return false;
+        return direction > 0 ? pendingFrom <= pendingTo : pendingFrom >= pendingTo;
+    }
+
+    private void scheduleIdle() {
+        if (!attached || idleScheduled || !hasPendingRows())return;
+        idleScheduled = true;
+        Looper.myQueue().addIdleHandler(this);
+    }
+
+    //新的一帧开始，记录帧开始时间用于计算帧截止时间，并继续处理剩余的行
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        lastFrameTimeNs = frameTimeNanos;
+        scheduleIdle();
+    }
+
+    @Override
+    public boolean queueIdle() {
+        long now = System.nanoTime();
+        long deadline = now + frameBudgetNs;
+        //不要超过当前帧的截止时间
+        if (lastFrameTimeNs > 0 && lastFrameTimeNs + frameIntervalNs > now){
+            deadline = Math.min(deadline,lastFrameTimeNs + frameIntervalNs);
+        }
+        int bound = 0;
+        while (hasPendingRows()){
+            //剩余时间不够绑定一行，留到下一帧，但每次空闲至少处理一行，保证能推进
+            if (bound > 0 && System.nanoTime() + rowCostNs > deadline)break;
+            long start = System.nanoTime();
+            if (grid.bindRow(pendingFrom)){
+                idleBoundRows++;
+                bound++;
+                long cost = System.nanoTime() - start;
+                rowCostNs = rowCostNs == 0 ? cost : (rowCostNs * 3 + cost) / 4;
+            }
+            pendingFrom += direction;
+        }
+        idleScheduled = false;
+        //还有没处理完的行，等下一帧开始后再继续
+        if (hasPendingRows() && attached && !frameScheduled){
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+        return false;
+    }
+}
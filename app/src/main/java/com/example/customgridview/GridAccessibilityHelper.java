@@ -0,0 +1,103 @@
+package com.example.customgridview;
+
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.view.accessibility.AccessibilityEvent;
+import android.widget.GridView;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat.CollectionInfoCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat.CollectionItemInfoCompat;
+import androidx.customview.widget.ExploreByTouchHelper;
+import java.util.List;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-9-24
+ *  @Version 1.0
+ *  @Description gridView的虚拟无障碍节点，只上报可见行中的节点
+ */
+class GridAccessibilityHelper extends ExploreByTouchHelper {
+
+    private final SimpleCustomGridView grid;
+    private final Rect tempRect = new Rect();
+
+    GridAccessibilityHelper(SimpleCustomGridView grid) {
+        super(grid);
+        this.grid = grid;
+    }
+
+    @Override
+    protected int getVirtualViewAt(float x, float y) {
+        int position = grid.getPositionAt((int) x,(int) y);
+        return position >= 0 ? position : INVALID_ID;
+    }
+
+    //只上报可见行中的节点，被过滤掉的不上报
+    @Override
+    protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+        int count = grid.getSlotCount();
+        if (count == 0 || !grid.getLocalVisibleRect(tempRect))return;
+        int start = grid.getRowStart(grid.getRowAt(tempRect.top));
+        int end = Math.min(count,grid.getRowEnd(grid.getRowAt(tempRect.bottom - 1)));
+        for (int slot=start; slot<end; slot++){
+            virtualViewIds.add(grid.getPositionOfSlot(slot));
+        }
+    }
+
+    @Override
+    protected void onPopulateNodeForHost(@NonNull AccessibilityNodeInfoCompat node) {
+        node.setClassName(GridView.class.getName());
+        int selectionMode;
+        switch (grid.getSelectionMode()){
+            case 1:
+                selectionMode = CollectionInfoCompat.SELECTION_MODE_SINGLE;
+                break;
+            case 2:
+                selectionMode = CollectionInfoCompat.SELECTION_MODE_MULTIPLE;
+                break;
+            default:
+                selectionMode = CollectionInfoCompat.SELECTION_MODE_NONE;
+                break;
+        }
+        node.setCollectionInfo(CollectionInfoCompat.obtain(grid.getRowCount(),grid.getColumn(),false,selectionMode));
+    }
+
+    @Override
+    protected void onPopulateNodeForVirtualView(int virtualViewId, @NonNull AccessibilityNodeInfoCompat node) {
+        //数据已经变化或者被过滤掉，节点不存在了
+        if (virtualViewId >= grid.getItemCount() || !grid.isItemVisible(virtualViewId)){
+            node.setText("");
+            node.setBoundsInParent(new Rect());
+            return;
+        }
+        int row = grid.getRowOfPosition(virtualViewId);
+        boolean selected = grid.isItemSelected(virtualViewId);
+        node.setClassName(TextView.class.getName());
+        node.setText(grid.getItem(virtualViewId));
+        grid.getCellBounds(virtualViewId,tempRect);
+        node.setBoundsInParent(tempRect);
+        boolean enabled = grid.isItemEnabled(virtualViewId);
+        node.setEnabled(enabled);
+        //已经选中的禁用项仍然可以点击取消选中
+        boolean clickable = enabled || selected;
+        node.setClickable(clickable);
+        if (clickable){
+            node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+        }
+        node.setSelected(selected);
+        node.setCollectionItemInfo(CollectionItemInfoCompat.obtain(row,1,grid.getSlotOfPosition(virtualViewId) - grid.getRowStart(row),1,false,selected));
+    }
+
+    @Override
+    protected boolean onPerformActionForVirtualView(int virtualViewId, int action, @Nullable Bundle arguments) {
+        if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && virtualViewId < grid.getItemCount()){
+            grid.performItemClick(virtualViewId);
+            sendEventForVirtualView(virtualViewId,AccessibilityEvent.TYPE_VIEW_CLICKED);
+            return true;
+        }
+        return false;
+    }
+}
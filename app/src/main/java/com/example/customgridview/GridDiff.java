@@ -0,0 +1,106 @@
+package com.example.customgridview;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-9-18
+ *  @Version 1.0
+ *  @Description 新旧两份数据的差异，按内容匹配，结果是新旧位置的映射
+ */
+public class GridDiff {
+
+    private final int[] oldToNew;
+    private final int[] newToOld;
+
+    private GridDiff(int[] oldToNew, int[] newToOld) {
+        this.oldToNew = oldToNew;
+        this.newToOld = newToOld;
+    }
+
+    /**
+     * 计算差异，不依赖主线程，可以在后台线程执行
+     * @param oldList 旧数据，可以为null
+     * @param newList 新数据，可以为null
+     */
+    public static GridDiff compute(List<String> oldList, List<String> newList) {
+        int oldSize = oldList == null ? 0 : oldList.size();
+        int newSize = newList == null ? 0 : newList.size();
+        int[] oldToNew = new int[oldSize];
+        int[] newToOld = new int[newSize];
+        Arrays.fill(oldToNew,-1);
+        Arrays.fill(newToOld,-1);
+
+        //先处理位置和内容都没有变化的item，这是最常见的情况，不需要查表
+        int same = Math.min(oldSize,newSize);
+        int unmatched = 0;
+        for (int i=0; i<same; i++){
+            if (equals(oldList.get(i),newList.get(i))){
+                oldToNew[i] = i;
+                newToOld[i] = i;
+            }else {
+                unmatched++;
+            }
+        }
+        if (unmatched == 0 && oldSize == newSize){
+            return new GridDiff(oldToNew,newToOld);
+        }
+
+        //剩下的旧item按内容建立索引，内容相同的按先后顺序排队
+        Map<String,ArrayDeque<Integer>> index = new HashMap<>();
+        for (int i=0; i<oldSize; i++){
+            if (oldToNew[i] != -1)continue;
+            String label = oldList.get(i);
+            ArrayDeque<Integer> queue = index.get(label);
+            if (queue == null){
+                queue = new ArrayDeque<>();
+                index.put(label,queue);
+            }
+            queue.add(i);
+        }
+        for (int i=0; i<newSize; i++){
+            if (newToOld[i] != -1)continue;
+            ArrayDeque<Integer> queue = index.get(newList.get(i));
+            if (queue == null || queue.isEmpty())continue;
+            int oldPosition = queue.poll();
+            oldToNew[oldPosition] = i;
+            newToOld[i] = oldPosition;
+        }
+        return new GridDiff(oldToNew,newToOld);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    //旧位置对应的新位置，被删除的返回-1
+    public int getNewPosition(int oldPosition) {
+        return oldPosition >= 0 && oldPosition < oldToNew.length ? oldToNew[oldPosition] : -1;
+    }
+
+    //新位置对应的旧位置，新插入的返回-1
+    public int getOldPosition(int newPosition) {
+        return newPosition >= 0 && newPosition < newToOld.length ? newToOld[newPosition] : -1;
+    }
+
+    public int getOldSize() {
+        return oldToNew.length;
+    }
+
+    public int getNewSize() {
+        return newToOld.length;
+    }
+
+    //新旧数据是否完全一样
+    public boolean isUnchanged() {
+        if (oldToNew.length != newToOld.length)return false;
+        for (int i=0; i<oldToNew.length; i++){
+            if (oldToNew[i] != i)return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.customgridview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-9-18
+ *  @Version 1.0
+ *  @Description 所有gridView共用的线程
+ */
+final class GridExecutors {
+
+    private static volatile ExecutorService background;
+    private static volatile ExecutorService decode;
+    private static volatile Handler mainHandler;
+
+    private GridExecutors() {
+    }
+
+    //后台单线程，保证提交的任务按顺序执行
+    static ExecutorService background() {
+        if (background == null){
+            synchronized (GridExecutors.class){
+                if (background == null){
+                    background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            Thread thread = new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                    r.run();
+                                }
+                            },"grid-background");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return background;
+    }
+
+    //图标解码线程，解码之间没有顺序要求，使用两个线程
+    static ExecutorService decode() {
+        if (decode == null){
+            synchronized (GridExecutors.class){
+                if (decode == null){
+                    decode = Executors.newFixedThreadPool(2,new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            Thread thread = new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                    r.run();
+                                }
+                            },"grid-decode");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return decode;
+    }
+
+    static Handler main() {
+        if (mainHandler == null){
+            synchronized (GridExecutors.class){
+                if (mainHandler == null){
+                    mainHandler = new Handler(Looper.getMainLooper());
+                }
+            }
+        }
+        return mainHandler;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.customgridview;
+
+import android.util.SparseArray;
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-10-29
+ *  @Version 1.0
+ *  @Description 过滤索引，支持拼音首字母搜索
+ */
+class GridFilterIndex {
+
+    //拼音首字母和内容之间的分隔符，不会出现在查询中
+    private static final char SEPARATOR = '\u0001';
+
+    //GB2312一级汉字按拼音排序，每个首字母开始的编码，没有i、u、v开头的拼音
+    private static final int[] PINYIN_BOUNDARIES = {
+            0xB0A1,0xB0C5,0xB2C1,0xB4EE,0xB6EA,0xB7A2,0xB8C1,0xB9FE,0xBBF7,
+            0xBFA6,0xC0AC,0xC2E8,0xC4C3,0xC5B6,0xC5BE,0xC6DA,0xC8BB,0xC8F6,
+            0xCBFA,0xCDDA,0xCEF4,0xD1B9,0xD4D1,0xD7FA};
+    private static final char[] PINYIN_INITIALS = {
+            'a','b','c','d','e','f','g','h','j','k','l','m','n','o','p','q',
+            'r','s','t','w','x','y','z'};
+    private static Charset gb2312;
+
+    //每一项用于搜索的内容：去掉变音符号的小写内容+分隔符+拼音首字母
+    private final String[] searchable;
+    //倒排表，key:单字或者二元组，value:包含它的位置，按位置递增
+    private final SparseArray<Posting> unigrams = new SparseArray<>();
+    private final SparseArray<Posting> bigrams = new SparseArray<>();
+
+    //上一次的查询和结果，用于增量筛选
+    private String lastQuery;
+    private int[] lastMatches = new int[0];
+    private int lastCount;
+
+    GridFilterIndex(List<String> labels) {
+        int size = labels.size();
+        searchable = new String[size];
+        for (int i=0; i<size; i++){
+            String label = labels.get(i);
+            String text = label == null ? "" : normalize(label) + SEPARATOR + initials(label);
+            searchable[i] = text;
+            for (int j=0; j<text.length(); j++){
+                char c = text.charAt(j);
+                add(unigrams,c,i);
+                if (j + 1 < text.length()){
+                    add(bigrams,(c << 16) | text.charAt(j + 1),i);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return searchable.length;
+    }
+
+    //估算占用的内存，单位字节
+    long getMemoryFootprint() {
+        long bytes = 16 + 4L * searchable.length + 4L * lastMatches.length;
+        for (String text : searchable){
+            bytes += 24 + 16 + 2L * text.length();
+        }
+        return bytes + getFootprint(unigrams) + getFootprint(bigrams);
+    }
+
+    private static long getFootprint(SparseArray<Posting> index) {
+        //key和value数组
+        long bytes = 8L * index.size();
+        for (int i=0; i<index.size(); i++){
+            bytes += 16 + 16 + 4L * index.valueAt(i).items.length;
+        }
+        return bytes;
+    }
+
+    private static void add(SparseArray<Posting> index, int key, int position) {
+        Posting posting = index.get(key);
+        if (posting == null){
+            posting = new Posting();
+            index.put(key,posting);
+        }
+        posting.add(position);
+    }
+
+    /**
+     * 过滤
+     * @param query 已经规范化的查询，不能为空
+     * @param out 输出匹配的位置，按位置递增，长度不小于size()
+     * @return 匹配的数量
+     */
+    int filter(String query, int[] out) {
+        int[] candidates;
+        int candidateCount;
+        if (lastQuery != null && query.contains(lastQuery)){
+            //新查询的结果一定是上一次结果的子集
+            candidates = lastMatches;
+            candidateCount = lastCount;
+        }else if (query.length() == 1){
+            Posting posting = unigrams.get(query.charAt(0));
+            candidates = posting == null ? null : posting.items;
+            candidateCount = posting == null ? 0 : posting.size;
+        }else {
+            //选择最短的倒排表作为候选
+            Posting shortest = null;
+            for (int i=0; i + 1 < query.length(); i++){
+                Posting posting = bigrams.get((query.charAt(i) << 16) | query.charAt(i + 1));
+                if (posting == null){
+                    shortest = null;
+                    break;
+                }
+                if (shortest == null || posting.size < shortest.size){
+                    shortest = posting;
+                }
+            }
+            candidates = shortest == null ? null : shortest.items;
+            candidateCount = shortest == null ? 0 : shortest.size;
+        }
+        int count = 0;
+        for (int i=0; i<candidateCount; i++){
+            int position = candidates[i];
+            if (searchable[position].contains(query)){
+                out[count++] = position;
+            }
+        }
+        lastQuery = query;
+        if (lastMatches.length < count){
+            lastMatches = new int[searchable.length];
+        }
+        System.arraycopy(out,0,lastMatches,0,count);
+        lastCount = count;
+        return count;
+    }
+
+    //去掉变音符号并转成小写，例如"Café"变为"cafe"
+    static String normalize(CharSequence text) {
+        String decomposed = Normalizer.normalize(text,Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i=0; i<decomposed.length(); i++){
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK)continue;
+            builder.append(c);
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+
+    //拼音首字母，常用汉字取首字母，字母数字原样保留，其他字符忽略
+    static String initials(String label) {
+        StringBuilder builder = new StringBuilder(label.length());
+        for (int i=0; i<label.length(); i++){
+            char c = label.charAt(i);
+            if (c >= 0x4E00 && c <= 0x9FA5){
+                char initial = pinyinInitial(c);
+                if (initial != 0){
+                    builder.append(initial);
+                }
+            }else if (Character.isLetterOrDigit(c)){
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    //根据GB2312编码得到拼音首字母，二级汉字按部首排序，无法得到时返回0
+    private static char pinyinInitial(char c) {
+        if (gb2312 == null){
+            try {
+                gb2312 = Charset.forName("GB2312");
+            }catch (RuntimeException e){
+                return 0;
+            }
+        }
+        byte[] bytes = String.valueOf(c).getBytes(gb2312);
+        if (bytes.length != 2)return 0;
+        int code = ((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff);
+        if (code < PINYIN_BOUNDARIES[0] || code >= PINYIN_BOUNDARIES[PINYIN_BOUNDARIES.length - 1])return 0;
+        for (int i=PINYIN_INITIALS.length - 1; i>=0; i--){
+            if (code >= PINYIN_BOUNDARIES[i])return PINYIN_INITIALS[i];
+        }
+        return 0;
+    }
+
+    //倒排表，位置按递增顺序添加
+    private static class Posting {
+        int[] items = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size > 0 && items[size - 1] == position)return;
+            if (size == items.length){
+                int[] grown = new int[size * 2];
+                System.arraycopy(items,0,grown,0,size);
+                items = grown;
+            }
+            items[size++] = position;
+        }
+    }
+}
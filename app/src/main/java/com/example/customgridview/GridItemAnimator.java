@@ -0,0 +1,160 @@
+package com.example.customgridview;
+
+import android.view.View;
+import android.view.ViewPropertyAnimator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-10-22
+ *  @Version 1.0
+ *  @Description 子view的增删移动动画，由新旧数据的差异驱动
+ */
+public class GridItemAnimator {
+
+    //默认动画时长
+    private static final long DEFAULT_DURATION = 250;
+
+    private final SimpleCustomGridView grid;
+    private final Interpolator interpolator = new DecelerateInterpolator();
+
+    private long moveDuration = DEFAULT_DURATION;
+    private long addDuration = DEFAULT_DURATION;
+    private long removeDuration = DEFAULT_DURATION;
+
+    //等待摆放后开始的动画，下标是新位置
+    private float[] fromX = new float[0];
+    private float[] fromY = new float[0];
+    private boolean[] moved = new boolean[0];
+    private boolean[] added = new boolean[0];
+    private boolean pending;
+    //删除的子view，摆放后在overlay上淡出
+    private final List<View> removedCells = new ArrayList<>();
+
+    //统计数据
+    private int moveCount;
+    private int addCount;
+    private int removeCount;
+
+    GridItemAnimator(SimpleCustomGridView grid) {
+        this.grid = grid;
+    }
+
+    public void setMoveDuration(long moveDuration) {
+        this.moveDuration = moveDuration;
+    }
+
+    public void setAddDuration(long addDuration) {
+        this.addDuration = addDuration;
+    }
+
+    public void setRemoveDuration(long removeDuration) {
+        this.removeDuration = removeDuration;
+    }
+
+    //最近一次变化中移动、插入、删除的子view数量
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getAddCount() {
+        return addCount;
+    }
+
+    public int getRemoveCount() {
+        return removeCount;
+    }
+
+    //准备记录新的一次变化，之前还没开始的动画作废
+    void begin(int newSize) {
+        if (fromX.length < newSize){
+            fromX = new float[newSize];
+            fromY = new float[newSize];
+            moved = new boolean[newSize];
+            added = new boolean[newSize];
+        }
+        for (int i=0; i<newSize; i++){
+            moved[i] = false;
+            added[i] = false;
+        }
+        moveCount = 0;
+        addCount = 0;
+        removeCount = 0;
+        pending = true;
+    }
+
+    //记录保留下来的子view当前显示的位置，正在进行的动画从当前位置继续
+    void recordMove(View cell, int newPosition) {
+        cell.animate().cancel();
+        fromX[newPosition] = cell.getLeft() + cell.getTranslationX();
+        fromY[newPosition] = cell.getTop() + cell.getTranslationY();
+        moved[newPosition] = true;
+    }
+
+    void recordAdd(View cell, int newPosition) {
+        cell.animate().cancel();
+        cell.setAlpha(0f);
+        added[newPosition] = true;
+        addCount++;
+    }
+
+    //删除的子view已经从gridView中移除，保留原来的位置画在overlay上
+    void recordRemove(View cell) {
+        cell.animate().cancel();
+        removedCells.add(cell);
+        removeCount++;
+    }
+
+    //摆放完成后开始动画
+    void runPendingAnimations() {
+        if (!pending)return;
+        pending = false;
+        int count = Math.min(grid.getChildCount(),moved.length);
+        for (int i=0; i<count; i++){
+            View cell = grid.getChildAt(i);
+            if (added[i]){
+                cell.animate().alpha(1f).setDuration(addDuration).setInterpolator(interpolator).withLayer();
+                continue;
+            }
+            if (!moved[i])continue;
+            float dx = fromX[i] - cell.getLeft();
+            float dy = fromY[i] - cell.getTop();
+            //位置没有变化的子view不需要动画
+            if (dx == 0 && dy == 0)continue;
+            moveCount++;
+            cell.setTranslationX(dx);
+            cell.setTranslationY(dy);
+            cell.animate().translationX(0f).translationY(0f).setDuration(moveDuration).setInterpolator(interpolator);
+        }
+        for (int i=0; i<removedCells.size(); i++){
+            final View cell = removedCells.get(i);
+            grid.getOverlay().add(cell);
+            ViewPropertyAnimator animator = cell.animate().alpha(0f).setDuration(removeDuration).setInterpolator(interpolator);
+            animator.withLayer().withEndAction(new Runnable() {
+                @Override
+                public void run() {
+                    grid.getOverlay().remove(cell);
+                    cell.setAlpha(1f);
+                    grid.onRemoveAnimationEnd(cell);
+                }
+            });
+        }
+        removedCells.clear();
+    }
+
+    //gridView离开窗口时结束所有动画
+    void endAnimations() {
+        for (int i=0; i<grid.getChildCount(); i++){
+            View cell = grid.getChildAt(i);
+            cell.animate().cancel();
+            cell.setTranslationX(0f);
+            cell.setTranslationY(0f);
+            cell.setAlpha(1f);
+        }
+        pending = false;
+        removedCells.clear();
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.customgridview;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.ViewTreeObserver;
+import android.view.Window;
+import androidx.annotation.RequiresApi;
+import java.util.Arrays;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-11-23
+ *  @Version 1.0
+ *  @Description 卡顿监控，统计帧耗时和gridView的测量、摆放、绑定耗时
+ *  只能在主线程使用
+ */
+public class GridJankMonitor implements Choreographer.FrameCallback, ViewTreeObserver.OnScrollChangedListener {
+
+    //gridView的工作阶段
+    static final int PHASE_MEASURE = 0;
+    static final int PHASE_LAYOUT = 1;
+    static final int PHASE_BIND = 2;
+
+    //默认帧间隔，60Hz
+    private static final long DEFAULT_FRAME_INTERVAL_NS = 16666667L;
+    //最多保存的还没有对应到帧的阶段数量，超出时丢弃最早的
+    private static final int MAX_PHASES = 64;
+    //Choreographer方式下连续这么多帧没有工作就停止
+    private static final int MAX_IDLE_FRAMES = 30;
+
+    private final SimpleCustomGridView grid;
+    private final SimpleCustomGridView.JankListener listener;
+    private final int reportFrames;                             //每多少帧输出一次
+    private long frameIntervalNs = DEFAULT_FRAME_INTERVAL_NS;   //帧间隔
+
+    //还没有对应到帧的阶段，环形队列，按结束时间排列
+    private final long[] phaseStarts = new long[MAX_PHASES];
+    private final long[] phaseDurations = new long[MAX_PHASES];
+    private final int[] phaseTypes = new int[MAX_PHASES];
+    private final boolean[] phaseNested = new boolean[MAX_PHASES];  //嵌套在其他阶段中，例如测量中的绑定，不重复计入总耗时
+    private int phaseHead;
+    private int phaseCount;
+    //当前嵌套的阶段层数
+    private int phaseDepth;
+
+    //当前统计窗口
+    private final long[] frameTimes;
+    private final long[] sortedFrameTimes;
+    private int frameCount;
+    private int jankCount;
+    private int gridFrameCount;
+    private long totalFrameNs;
+    private long gridNs;
+    private final long[] phaseNs = new long[3];
+
+    private boolean attached;
+    private FrameMetricsListener frameMetricsListener;
+    //Choreographer方式的状态
+    private boolean frameScheduled;
+    private long lastFrameTimeNs;
+    private boolean scrolled;
+    private int idleFrames;
+
+    //统计数据
+    private int reportCount;
+
+    GridJankMonitor(SimpleCustomGridView grid, int reportFrames, SimpleCustomGridView.JankListener listener) {
+        if (reportFrames <= 0){
+            throw new IllegalArgumentException("reportFrames必须大于0！！！");
+        }
+        this.grid = grid;
+        this.reportFrames = reportFrames;
+        this.listener = listener;
+        frameTimes = new long[reportFrames];
+        sortedFrameTimes = new long[reportFrames];
+    }
+
+    public int getReportFrames() {
+        return reportFrames;
+    }
+
+    //是否使用FrameMetrics，false表示使用Choreographer
+    public boolean isUsingFrameMetrics() {
+        return frameMetricsListener != null;
+    }
+
+    //已经输出的次数
+    public int getReportCount() {
+        return reportCount;
+    }
+
+    void attach() {
+        if (attached)return;
+        attached = true;
+        Display display = grid.getDisplay();
+        if (display != null && display.getRefreshRate() > 0){
+            frameIntervalNs = (long) (1000000000L / display.getRefreshRate());
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N){
+            Window window = findWindow(grid.getContext());
+            if (window != null){
+                frameMetricsListener = new FrameMetricsListener(this,window);
+                frameMetricsListener.register();
+            }
+        }
+        grid.getViewTreeObserver().addOnScrollChangedListener(this);
+    }
+
+    //离开窗口时把当前窗口中已经统计的帧输出
+    void detach() {
+        if (!attached)return;
+        attached = false;
+        if (frameMetricsListener != null){
+            frameMetricsListener.unregister();
+            frameMetricsListener = null;
+        }
+        grid.getViewTreeObserver().removeOnScrollChangedListener(this);
+        if (frameScheduled){
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        lastFrameTimeNs = 0;
+        phaseCount = 0;
+        flush();
+    }
+
+    private static Window findWindow(Context context) {
+        while (context instanceof ContextWrapper){
+            if (context instanceof Activity){
+                return ((Activity) context).getWindow();
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    //开始一个阶段，返回开始时间，必须和endPhase成对调用
+    long beginPhase() {
+        phaseDepth++;
+        return System.nanoTime();
+    }
+
+    void endPhase(int type, long start) {
+        long now = System.nanoTime();
+        phaseDepth--;
+        if (!attached)return;
+        if (phaseCount == MAX_PHASES){
+            phaseHead = (phaseHead + 1) % MAX_PHASES;
+            phaseCount--;
+        }
+        int i = (phaseHead + phaseCount) % MAX_PHASES;
+        phaseStarts[i] = start;
+        phaseDurations[i] = now - start;
+        phaseTypes[i] = type;
+        phaseNested[i] = phaseDepth > 0;
+        phaseCount++;
+        if (frameMetricsListener == null){
+            startFrameCallbacks(start);
+        }
+    }
+
+    @Override
+    public void onScrollChanged() {
+        if (frameMetricsListener != null)return;
+        scrolled = true;
+        startFrameCallbacks(System.nanoTime());
+    }
+
+    /**
+     * Choreographer方式：有工作时开始逐帧回调
+     * 已经停止时当前帧的开始时间未知，以工作开始的时间近似，这一帧的耗时会略微偏小
+     */
+    private void startFrameCallbacks(long now) {
+        idleFrames = 0;
+        if (frameScheduled)return;
+        if (lastFrameTimeNs == 0){
+            lastFrameTimeNs = now;
+        }
+        frameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    //Choreographer方式：上一帧开始到这一帧开始的间隔作为上一帧的耗时，跳过了至少一次垂直同步才算卡顿
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        boolean active = scrolled;
+        scrolled = false;
+        if (frameTimeNanos > lastFrameTimeNs){
+            active |= onFrame(lastFrameTimeNs,frameTimeNanos - lastFrameTimeNs,frameIntervalNs * 3 / 2,false,active);
+            lastFrameTimeNs = frameTimeNanos;
+        }
+        idleFrames = active ? 0 : idleFrames + 1;
+        if (!attached || idleFrames >= MAX_IDLE_FRAMES){
+            lastFrameTimeNs = 0;
+            return;
+        }
+        frameScheduled = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * FrameMetrics方式：每一个真正绘制的帧都会统计
+     * @param frameStart 帧的开始时间，API 26以下拿不到，为-1，此时所有还没对应的阶段都算在这一帧
+     * @param duration 帧耗时
+     */
+    void onFrameMetrics(long frameStart, long duration) {
+        if (!attached)return;
+        onFrame(Math.max(0,frameStart),duration,frameIntervalNs,frameStart < 0,true);
+    }
+
+    /**
+     * 统计一帧，把开始时间在这一帧之内的阶段对应到这一帧，更早的阶段所在的帧没有统计到，丢弃
+     * @param jankThresholdNs 耗时超过这个值算卡顿
+     * @param allPhases 是否把所有阶段都算在这一帧
+     * @param record 没有gridView工作时是否也统计这一帧
+     * @return gridView在这一帧是否有工作
+     */
+    private boolean onFrame(long frameStart, long duration, long jankThresholdNs, boolean allPhases, boolean record) {
+        long frameEnd = frameStart + duration;
+        long frameGridNs = 0;
+        boolean worked = false;
+        while (phaseCount > 0){
+            int i = phaseHead;
+            if (!allPhases && phaseStarts[i] >= frameEnd)break;
+            if (allPhases || phaseStarts[i] >= frameStart){
+                worked = true;
+                phaseNs[phaseTypes[i]] += phaseDurations[i];
+                if (!phaseNested[i]){
+                    frameGridNs += phaseDurations[i];
+                }
+            }
+            phaseHead = (phaseHead + 1) % MAX_PHASES;
+            phaseCount--;
+        }
+        if (!worked && !record)return false;
+        frameTimes[frameCount++] = duration;
+        totalFrameNs += duration;
+        gridNs += frameGridNs;
+        if (worked){
+            gridFrameCount++;
+        }
+        if (duration > jankThresholdNs){
+            jankCount++;
+        }
+        if (frameCount == reportFrames){
+            flush();
+        }
+        return worked;
+    }
+
+    //立即输出当前窗口中已经统计的帧，没有时不输出
+    public void flush() {
+        if (frameCount == 0)return;
+        System.arraycopy(frameTimes,0,sortedFrameTimes,0,frameCount);
+        Arrays.sort(sortedFrameTimes,0,frameCount);
+        Report report = new Report(frameMetricsListener != null,frameCount,jankCount,gridFrameCount,
+                percentile(0.5f),percentile(0.9f),percentile(0.99f),sortedFrameTimes[frameCount - 1],
+                totalFrameNs,gridNs,phaseNs[PHASE_MEASURE],phaseNs[PHASE_LAYOUT],phaseNs[PHASE_BIND]);
+        frameCount = 0;
+        jankCount = 0;
+        gridFrameCount = 0;
+        totalFrameNs = 0;
+        gridNs = 0;
+        Arrays.fill(phaseNs,0);
+        reportCount++;
+        listener.onJankReport(report);
+    }
+
+    //最近秩法计算百分位数
+    private long percentile(float p) {
+        int index = (int) Math.ceil(p * frameCount) - 1;
+        return sortedFrameTimes[Math.max(0,Math.min(index,frameCount - 1))];
+    }
+
+    //一次输出的统计结果，时间单位纳秒
+    public static final class Report {
+        public final boolean frameMetrics;      //true：FrameMetrics的帧耗时 false：Choreographer的帧间隔
+        public final int frameCount;            //统计的帧数
+        public final int jankCount;             //卡顿的帧数
+        public final int gridFrameCount;        //gridView有工作的帧数
+        public final long p50Ns;
+        public final long p90Ns;
+        public final long p99Ns;
+        public final long maxNs;
+        public final long totalFrameNs;         //所有帧的总耗时
+        public final long gridNs;               //gridView的总耗时
+        public final long measureNs;            //测量耗时
+        public final long layoutNs;             //摆放耗时
+        public final long bindNs;               //绑定耗时，包括测量、摆放中的绑定
+
+        Report(boolean frameMetrics, int frameCount, int jankCount, int gridFrameCount, long p50Ns, long p90Ns, long p99Ns, long maxNs,
+               long totalFrameNs, long gridNs, long measureNs, long layoutNs, long bindNs) {
+            this.frameMetrics = frameMetrics;
+            this.frameCount = frameCount;
+            this.jankCount = jankCount;
+            this.gridFrameCount = gridFrameCount;
+            this.p50Ns = p50Ns;
+            this.p90Ns = p90Ns;
+            this.p99Ns = p99Ns;
+            this.maxNs = maxNs;
+            this.totalFrameNs = totalFrameNs;
+            this.gridNs = gridNs;
+            this.measureNs = measureNs;
+            this.layoutNs = layoutNs;
+            this.bindNs = bindNs;
+        }
+
+        //gridView耗时占所有帧耗时的比例
+        public float getGridShare() {
+            return totalFrameNs == 0 ? 0f : (float) gridNs / totalFrameNs;
+        }
+
+        //卡顿率
+        public float getJankRate() {
+            return frameCount == 0 ? 0f : (float) jankCount / frameCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{" + (frameMetrics ? "FrameMetrics" : "Choreographer")
+                    + ", frames=" + frameCount + ", jank=" + jankCount + ", gridFrames=" + gridFrameCount
+                    + ", p50=" + p50Ns / 1000 + "us, p90=" + p90Ns / 1000 + "us, p99=" + p99Ns / 1000 + "us, max=" + maxNs / 1000
+                    + "us, gridShare=" + getGridShare() + ", measure=" + measureNs / 1000 + "us, layout=" + layoutNs / 1000
+                    + "us, bind=" + bindNs / 1000 + "us}";
+        }
+    }
+
+    //API 24及以上的帧耗时回调，在主线程回调，和阶段记录在同一个线程
+    @RequiresApi(Build.VERSION_CODES.N)
+    private static class FrameMetricsListener implements Window.OnFrameMetricsAvailableListener {
+
+        private final GridJankMonitor monitor;
+        private final Window window;
+
+        FrameMetricsListener(GridJankMonitor monitor, Window window) {
+            this.monitor = monitor;
+            this.window = window;
+        }
+
+        void register() {
+            window.addOnFrameMetricsAvailableListener(this,new Handler(Looper.getMainLooper()));
+        }
+
+        void unregister() {
+            window.removeOnFrameMetricsAvailableListener(this);
+        }
+
+        @Override
+        public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+            long start = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? frameMetrics.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP) : -1;
+            monitor.onFrameMetrics(start,frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+        }
+    }
+}
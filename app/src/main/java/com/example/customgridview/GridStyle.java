@@ -0,0 +1,414 @@
+package com.example.customgridview;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import java.util.WeakHashMap;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-11-27
+ *  @Version 1.0
+ *  @Description gridView的样式，不可变，可以在多个gridView之间共用
+ */
+public final class GridStyle {
+
+    //没有设置的颜色
+    public static final int UNSET_COLOR = -111;
+
+    //key:主题，value:解析时的配置和按style资源缓存的样式
+    private static final WeakHashMap<Resources.Theme,CacheEntry> CACHE = new WeakHashMap<>();
+
+    //SimpleCustomGridView
+    public final int column;
+    public final int gapVertical;
+    public final int gapHorizontal;
+    public final int leftPadding;
+    public final int topPadding;
+    public final int rightPadding;
+    public final int bottomPadding;
+    public final int gridPadding;
+    public final int selectDrawable;
+    public final int defaultDrawable;
+    public final int colorSelector;
+    public final int textSize;
+    //WonderfulGridView
+    public final int responseMode;
+    public final int selectColor;
+    public final int defaultColor;
+    public final int selectTextColor;
+    public final int defaultTextColor;
+    public final int selectAnimDuration;
+    public final float selectScale;
+    //TabContentGridView
+    public final int tabSelectDrawable;
+    public final int tabDefaultDrawable;
+    public final int selectDividerColor;
+    public final int defaultDividerColor;
+    //SectionGridView
+    public final float sectionHeaderTextSize;
+    public final int sectionHeaderTextColor;
+    public final int sectionHeaderBackground;
+    public final int sectionHeaderPadding;
+    public final boolean stickyHeader;
+    public final int selectionScope;
+    //IconGridView
+    public final int iconSize;
+    public final int iconPadding;
+    public final int iconPrefetchRows;
+
+    private GridStyle(Builder builder) {
+        column = builder.column;
+        gapVertical = builder.gapVertical;
+        gapHorizontal = builder.gapHorizontal;
+        leftPadding = builder.leftPadding;
+        topPadding = builder.topPadding;
+        rightPadding = builder.rightPadding;
+        bottomPadding = builder.bottomPadding;
+        gridPadding = builder.gridPadding;
+        selectDrawable = builder.selectDrawable;
+        defaultDrawable = builder.defaultDrawable;
+        colorSelector = builder.colorSelector;
+        textSize = builder.textSize;
+        responseMode = builder.responseMode;
+        selectColor = builder.selectColor;
+        defaultColor = builder.defaultColor;
+        selectTextColor = builder.selectTextColor;
+        defaultTextColor = builder.defaultTextColor;
+        selectAnimDuration = builder.selectAnimDuration;
+        selectScale = builder.selectScale;
+        tabSelectDrawable = builder.tabSelectDrawable;
+        tabDefaultDrawable = builder.tabDefaultDrawable;
+        selectDividerColor = builder.selectDividerColor;
+        defaultDividerColor = builder.defaultDividerColor;
+        sectionHeaderTextSize = builder.sectionHeaderTextSize;
+        sectionHeaderTextColor = builder.sectionHeaderTextColor;
+        sectionHeaderBackground = builder.sectionHeaderBackground;
+        sectionHeaderPadding = builder.sectionHeaderPadding;
+        stickyHeader = builder.stickyHeader;
+        selectionScope = builder.selectionScope;
+        iconSize = builder.iconSize;
+        iconPadding = builder.iconPadding;
+        iconPrefetchRows = builder.iconPrefetchRows;
+    }
+
+    /**
+     * 获取布局属性对应的样式，布局中直接写了gridView属性时每次解析，否则使用缓存
+     * @param attrs 布局属性，为null时只使用主题中的属性
+     */
+    public static GridStyle obtain(Context context, AttributeSet attrs) {
+        if (attrs != null && hasInlineAttributes(attrs)){
+            return parse(context,attrs);
+        }
+        Resources.Theme theme = context.getTheme();
+        Configuration config = context.getResources().getConfiguration();
+        int styleRes = attrs == null ? 0 : attrs.getStyleAttribute();
+        synchronized (CACHE){
+            CacheEntry entry = CACHE.get(theme);
+            GridStyle style = entry == null || !entry.matches(config) ? null : entry.styles.get(styleRes);
+            if (style != null)return style;
+        }
+        //解析过程不加锁，多个线程同时解析时结果相同，保留任意一个即可
+        GridStyle style = parse(context,attrs);
+        synchronized (CACHE){
+            CacheEntry entry = CACHE.get(theme);
+            //自己处理配置变化(没有重建界面)时，主题不变但尺寸、颜色可能变了，之前的样式全部失效
+            if (entry == null || !entry.matches(config)){
+                entry = new CacheEntry(config);
+                CACHE.put(theme,entry);
+            }
+            entry.styles.put(styleRes,style);
+        }
+        return style;
+    }
+
+    //主题被修改(例如Theme.applyStyle)后缓存的样式失效，需要清空
+    public static void clearCache() {
+        synchronized (CACHE){
+            CACHE.clear();
+        }
+    }
+
+    //同一个主题下解析的样式，和解析时的配置对应
+    private static class CacheEntry {
+        final Configuration config;
+        final SparseArray<GridStyle> styles = new SparseArray<>();
+
+        CacheEntry(Configuration config) {
+            //Resources会原地修改配置对象，需要复制
+            this.config = new Configuration(config);
+        }
+
+        //密度、字体缩放、夜间模式、方向、语言等任意资源限定符变化后资源值都可能不同
+        boolean matches(Configuration config) {
+            return this.config.diff(config) == 0;
+        }
+    }
+
+    //布局中是否直接写了gridView的属性
+    private static boolean hasInlineAttributes(AttributeSet attrs) {
+        int[] styleable = R.styleable.wonderfulGridViewStyle;
+        for (int i=0; i<attrs.getAttributeCount(); i++){
+            int attr = attrs.getAttributeNameResource(i);
+            if (attr == 0)continue;
+            for (int id : styleable){
+                if (id == attr)return true;
+            }
+        }
+        return false;
+    }
+
+    //一次读取所有gridView的属性
+    private static GridStyle parse(Context context, AttributeSet attrs) {
+        TypedArray typedArray = context.obtainStyledAttributes(attrs,R.styleable.wonderfulGridViewStyle);
+        Builder builder = new Builder();
+        builder.column = typedArray.getInteger(R.styleable.wonderfulGridViewStyle_column,builder.column);
+        builder.gapVertical = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gapVertical,builder.gapVertical);
+        builder.gapHorizontal = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gapHorizontal,builder.gapHorizontal);
+
+        builder.leftPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_leftPadding,builder.leftPadding);
+        builder.topPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_topPadding,builder.topPadding);
+        builder.rightPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_rightPadding,builder.rightPadding);
+        builder.bottomPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_bottomPadding,builder.bottomPadding);
+        builder.gridPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gridPadding,builder.gridPadding);
+
+        builder.selectDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_selectDrawable,builder.selectDrawable);
+        builder.defaultDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_defaultDrawable,builder.defaultDrawable);
+        builder.colorSelector = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_colorSelector,builder.colorSelector);
+        builder.textSize = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gridTextSize,builder.textSize);
+
+        builder.responseMode = typedArray.getInteger(R.styleable.wonderfulGridViewStyle_responseMode,builder.responseMode);
+        builder.selectColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_selectColor,builder.selectColor);
+        builder.defaultColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_defaultColor,builder.defaultColor);
+        builder.selectTextColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_selectTextColor,builder.selectTextColor);
+        builder.defaultTextColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_defaultTextColor,builder.defaultTextColor);
+        builder.selectAnimDuration = Math.max(0,typedArray.getInteger(R.styleable.wonderfulGridViewStyle_selectAnimDuration,builder.selectAnimDuration));
+        builder.selectScale = typedArray.getFloat(R.styleable.wonderfulGridViewStyle_selectScale,builder.selectScale);
+
+        builder.tabSelectDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_tabSelectDrawable,builder.tabSelectDrawable);
+        builder.tabDefaultDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_tabDefaultDrawable,builder.tabDefaultDrawable);
+        builder.selectDividerColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_selectDividerColor,builder.selectDividerColor);
+        builder.defaultDividerColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_defaultDividerColor,builder.defaultDividerColor);
+
+        builder.sectionHeaderTextSize = typedArray.getDimension(R.styleable.wonderfulGridViewStyle_sectionHeaderTextSize,builder.sectionHeaderTextSize);
+        builder.sectionHeaderTextColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_sectionHeaderTextColor,builder.sectionHeaderTextColor);
+        builder.sectionHeaderBackground = typedArray.getColor(R.styleable.wonderfulGridViewStyle_sectionHeaderBackground,builder.sectionHeaderBackground);
+        builder.sectionHeaderPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_sectionHeaderPadding,builder.sectionHeaderPadding);
+        builder.stickyHeader = typedArray.getBoolean(R.styleable.wonderfulGridViewStyle_stickyHeader,builder.stickyHeader);
+        builder.selectionScope = typedArray.getInteger(R.styleable.wonderfulGridViewStyle_selectionScope,builder.selectionScope);
+
+        builder.iconSize = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_iconSize,builder.iconSize);
+        builder.iconPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_iconPadding,builder.iconPadding);
+        builder.iconPrefetchRows = typedArray.getInteger(R.styleable.wonderfulGridViewStyle_iconPrefetchRows,builder.iconPrefetchRows);
+        typedArray.recycle();
+        return builder.build();
+    }
+
+    //以当前样式为基础修改
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
+    public static final class Builder {
+
+        private int column = 1;
+        private int gapVertical;
+        private int gapHorizontal;
+        private int leftPadding;
+        private int topPadding;
+        private int rightPadding;
+        private int bottomPadding;
+        private int gridPadding = -1;
+        private int selectDrawable = R.drawable.rect_blue_blank;
+        private int defaultDrawable = R.drawable.rect_gray_blank;
+        private int colorSelector = R.drawable.color_selector;
+        private int textSize = -1;
+        private int responseMode;
+        private int selectColor = UNSET_COLOR;
+        private int defaultColor = UNSET_COLOR;
+        private int selectTextColor = Color.BLUE;
+        private int defaultTextColor = Color.BLACK;
+        private int selectAnimDuration;
+        private float selectScale = 1f;
+        private int tabSelectDrawable = R.drawable.rect_blue_blank;
+        private int tabDefaultDrawable = R.drawable.rect_gray_blank;
+        private int selectDividerColor = UNSET_COLOR;
+        private int defaultDividerColor = UNSET_COLOR;
+        private float sectionHeaderTextSize = -1;
+        private int sectionHeaderTextColor = Color.DKGRAY;
+        private int sectionHeaderBackground = Color.WHITE;
+        private int sectionHeaderPadding = -1;
+        private boolean stickyHeader;
+        private int selectionScope;
+        private int iconSize = -1;
+        private int iconPadding;
+        private int iconPrefetchRows = 1;
+
+        public Builder() {
+        }
+
+        private Builder(GridStyle style) {
+            column = style.column;
+            gapVertical = style.gapVertical;
+            gapHorizontal = style.gapHorizontal;
+            leftPadding = style.leftPadding;
+            topPadding = style.topPadding;
+            rightPadding = style.rightPadding;
+            bottomPadding = style.bottomPadding;
+            gridPadding = style.gridPadding;
+            selectDrawable = style.selectDrawable;
+            defaultDrawable = style.defaultDrawable;
+            colorSelector = style.colorSelector;
+            textSize = style.textSize;
+            responseMode = style.responseMode;
+            selectColor = style.selectColor;
+            defaultColor = style.defaultColor;
+            selectTextColor = style.selectTextColor;
+            defaultTextColor = style.defaultTextColor;
+            selectAnimDuration = style.selectAnimDuration;
+            selectScale = style.selectScale;
+            tabSelectDrawable = style.tabSelectDrawable;
+            tabDefaultDrawable = style.tabDefaultDrawable;
+            selectDividerColor = style.selectDividerColor;
+            defaultDividerColor = style.defaultDividerColor;
+            sectionHeaderTextSize = style.sectionHeaderTextSize;
+            sectionHeaderTextColor = style.sectionHeaderTextColor;
+            sectionHeaderBackground = style.sectionHeaderBackground;
+            sectionHeaderPadding = style.sectionHeaderPadding;
+            stickyHeader = style.stickyHeader;
+            selectionScope = style.selectionScope;
+            iconSize = style.iconSize;
+            iconPadding = style.iconPadding;
+            iconPrefetchRows = style.iconPrefetchRows;
+        }
+
+        public Builder setColumn(int column) {
+            if (column < 1){
+                throw new IllegalArgumentException("column必须大于0！！！");
+            }
+            this.column = column;
+            return this;
+        }
+
+        //gapVertical：每列中间的间隔 gapHorizontal：每行中间的间隔
+        public Builder setGap(int gapVertical, int gapHorizontal) {
+            this.gapVertical = gapVertical;
+            this.gapHorizontal = gapHorizontal;
+            return this;
+        }
+
+        //子view的padding
+        public Builder setCellPadding(int left, int top, int right, int bottom) {
+            leftPadding = left;
+            topPadding = top;
+            rightPadding = right;
+            bottomPadding = bottom;
+            return this;
+        }
+
+        //子view上下左右相同的padding，-1表示使用分别设置的padding
+        public Builder setGridPadding(int gridPadding) {
+            this.gridPadding = gridPadding;
+            return this;
+        }
+
+        public Builder setDrawables(int selectDrawable, int defaultDrawable) {
+            this.selectDrawable = selectDrawable;
+            this.defaultDrawable = defaultDrawable;
+            return this;
+        }
+
+        public Builder setColorSelector(int colorSelector) {
+            this.colorSelector = colorSelector;
+            return this;
+        }
+
+        //字体大小，单位px，-1表示默认大小
+        public Builder setTextSize(int textSize) {
+            this.textSize = textSize;
+            return this;
+        }
+
+        public Builder setResponseMode(int responseMode) {
+            this.responseMode = responseMode;
+            return this;
+        }
+
+        //背景颜色，UNSET_COLOR表示使用背景Drawable
+        public Builder setColors(int selectColor, int defaultColor) {
+            this.selectColor = selectColor;
+            this.defaultColor = defaultColor;
+            return this;
+        }
+
+        public Builder setTextColors(int selectTextColor, int defaultTextColor) {
+            this.selectTextColor = selectTextColor;
+            this.defaultTextColor = defaultTextColor;
+            return this;
+        }
+
+        //选中状态切换动画的时长(ms)和选中时的缩放比例
+        public Builder setSelectAnimation(int duration, float scale) {
+            selectAnimDuration = Math.max(0,duration);
+            selectScale = scale;
+            return this;
+        }
+
+        public Builder setTabDrawables(int tabSelectDrawable, int tabDefaultDrawable) {
+            this.tabSelectDrawable = tabSelectDrawable;
+            this.tabDefaultDrawable = tabDefaultDrawable;
+            return this;
+        }
+
+        //分割线颜色，UNSET_COLOR表示和字体颜色一致
+        public Builder setDividerColors(int selectDividerColor, int defaultDividerColor) {
+            this.selectDividerColor = selectDividerColor;
+            this.defaultDividerColor = defaultDividerColor;
+            return this;
+        }
+
+        //分组标题，textSize和padding单位px，-1表示默认值
+        public Builder setSectionHeader(float textSize, int textColor, int background, int padding) {
+            sectionHeaderTextSize = textSize;
+            sectionHeaderTextColor = textColor;
+            sectionHeaderBackground = background;
+            sectionHeaderPadding = padding;
+            return this;
+        }
+
+        public Builder setStickyHeader(boolean stickyHeader) {
+            this.stickyHeader = stickyHeader;
+            return this;
+        }
+
+        //选择范围 0：全局 1：每个分组
+        public Builder setSelectionScope(int selectionScope) {
+            this.selectionScope = selectionScope;
+            return this;
+        }
+
+        //图标大小，单位px，-1表示默认大小
+        public Builder setIconSize(int iconSize) {
+            this.iconSize = iconSize;
+            return this;
+        }
+
+        public Builder setIconPadding(int iconPadding) {
+            this.iconPadding = iconPadding;
+            return this;
+        }
+
+        public Builder setIconPrefetchRows(int iconPrefetchRows) {
+            this.iconPrefetchRows = iconPrefetchRows;
+            return this;
+        }
+
+        public GridStyle build() {
+            return new GridStyle(this);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.customgridview;
+
+import android.content.ComponentCallbacks2;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+import java.util.ArrayList;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-10-15
+ *  @Version 1.0
+ *  @Description 多个gridView共用的子view池和文字测量缓存，只能在同一个界面内、主线程使用
+ */
+public class GridViewPool {
+
+    //每种子view默认最多缓存的数量
+    private static final int DEFAULT_MAX_CELLS = 64;
+    //默认最多缓存的测量结果数量
+    private static final int DEFAULT_MEASURE_CACHE_SIZE = 512;
+
+    //内存不足时的释放程度
+    static final int TRIM_NONE = 0;     //不释放
+    static final int TRIM_HALF = 1;     //释放一半，保留最近使用的
+    static final int TRIM_ALL = 2;      //全部释放
+
+    //key:子view的类型，value:回收的子view
+    private final SparseArray<ArrayList<View>> scrapCells = new SparseArray<>();
+    private final SparseIntArray maxCells = new SparseIntArray();
+    private final int measureCacheSize;
+    //测量缓存，全部释放后下一次使用时重新创建
+    private TextMeasureCache measureCache;
+
+    //统计数据
+    private int reusedCells;        //从池中复用的子view数量
+    private int missedCells;        //池中没有，需要重新创建的子view数量
+    private int releasedCells;      //内存不足时释放的子view数量
+    private long releasedBytes;     //内存不足时释放的测量缓存字节数
+
+    public GridViewPool() {
+        this(DEFAULT_MEASURE_CACHE_SIZE);
+    }
+
+    /**
+     * @param measureCacheSize 最多缓存的测量结果数量
+     */
+    public GridViewPool(int measureCacheSize) {
+        if (measureCacheSize <= 0){
+            throw new IllegalArgumentException("measureCacheSize必须大于0！！！");
+        }
+        this.measureCacheSize = measureCacheSize;
+    }
+
+    //设置某种子view最多缓存的数量
+    public void setMaxRecycledCells(int cellType, int max) {
+        maxCells.put(cellType,Math.max(0,max));
+        ArrayList<View> scrap = scrapCells.get(cellType);
+        while (scrap != null && scrap.size() > max){
+            scrap.remove(scrap.size() - 1);
+        }
+    }
+
+    //从池中获取一个子view，没有时返回null
+    View acquireCell(int cellType) {
+        ArrayList<View> scrap = scrapCells.get(cellType);
+        if (scrap == null || scrap.isEmpty()){
+            missedCells++;
+            return null;
+        }
+        reusedCells++;
+        return scrap.remove(scrap.size() - 1);
+    }
+
+    //子view放回池中，之前绑定的样式和显示状态属于原来的gridView，需要重置
+    void releaseCell(int cellType, View cell) {
+        if (cell.getParent() != null || cell.hasTransientState())return;
+        ArrayList<View> scrap = scrapCells.get(cellType);
+        if (scrap == null){
+            scrap = new ArrayList<>();
+            scrapCells.put(cellType,scrap);
+        }
+        if (scrap.size() >= maxCells.get(cellType,DEFAULT_MAX_CELLS))return;
+        cell.setTag(R.id.grid_cell_style_bound,null);
+        cell.setOnClickListener(null);
+        cell.setOnLongClickListener(null);
+        resetCell(cell);
+        scrap.add(cell);
+    }
+
+    //过滤隐藏的可见性、动画的透明度和位移、选中时的缩放和选中状态都恢复默认
+    private static void resetCell(View cell) {
+        cell.animate().cancel();
+        cell.setVisibility(View.VISIBLE);
+        cell.setAlpha(1f);
+        cell.setTranslationX(0f);
+        cell.setTranslationY(0f);
+        cell.setScaleX(1f);
+        cell.setScaleY(1f);
+        cell.setSelected(false);
+        cell.setPressed(false);
+        cell.setActivated(false);
+        //背景选择器的渐变动画直接结束
+        cell.jumpDrawablesToCurrentState();
+    }
+
+    //池中某种子view的数量
+    public int getRecycledCellCount(int cellType) {
+        ArrayList<View> scrap = scrapCells.get(cellType);
+        return scrap == null ? 0 : scrap.size();
+    }
+
+    public TextMeasureCache getMeasureCache() {
+        if (measureCache == null){
+            measureCache = new TextMeasureCache(measureCacheSize);
+        }
+        return measureCache;
+    }
+
+    public int getReusedCells() {
+        return reusedCells;
+    }
+
+    public int getMissedCells() {
+        return missedCells;
+    }
+
+    public int getReleasedCells() {
+        return releasedCells;
+    }
+
+    public long getReleasedBytes() {
+        return releasedBytes;
+    }
+
+    /**
+     * 内存不足时按等级释放，多个gridView共用时会重复调用，重复调用不会多释放
+     * @param level {@link ComponentCallbacks2}中的TRIM_MEMORY_XXX
+     */
+    public void trimMemory(int level) {
+        int tier = getTrimTier(level);
+        if (tier == TRIM_NONE)return;
+        for (int i=0; i<scrapCells.size(); i++){
+            ArrayList<View> scrap = scrapCells.valueAt(i);
+            //释放一半时最多保留最大数量的一半，后放入的先复用，从前面开始释放
+            int keep = tier == TRIM_HALF ? maxCells.get(scrapCells.keyAt(i),DEFAULT_MAX_CELLS) / 2 : 0;
+            int surplus = Math.max(0,scrap.size() - keep);
+            if (surplus == 0)continue;
+            scrap.subList(0,surplus).clear();
+            releasedCells += surplus;
+        }
+        if (tier == TRIM_ALL && measureCache != null){
+            releasedBytes += measureCache.getMemoryFootprint();
+            measureCache = null;
+        }
+    }
+
+    /**
+     * 内存不足等级对应的释放程度
+     * 应用在后台或者系统内存严重不足时全部释放，内存偏低或界面不可见时释放一半
+     */
+    static int getTrimTier(int level) {
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL || level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND){
+            return TRIM_ALL;
+        }
+        return level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW ? TRIM_HALF : TRIM_NONE;
+    }
+
+    //清空池中的子view和测量缓存，例如界面销毁时
+    public void clear() {
+        scrapCells.clear();
+        if (measureCache != null){
+            measureCache.clear();
+        }
+    }
+}
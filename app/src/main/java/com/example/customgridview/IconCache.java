@@ -0,0 +1,267 @@
+package com.example.customgridview;
+
+import android.app.ActivityManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-11-16
+ *  @Version 1.0
+ *  @Description 图标缓存，按字节数限制大小的LRU
+ */
+public class IconCache {
+
+    private static final String TAG = "IconCache";
+    //复用池最多保存的bitmap数量
+    private static final int MAX_REUSABLE = 8;
+
+    private final LruCache<String,Bitmap> cache;
+    //正在显示的bitmap和显示它的子view数量，被淘汰时不能复用
+    private final IdentityHashMap<Bitmap,Integer> inUse = new IdentityHashMap<>();
+    //在缓存中的bitmap
+    private final IdentityHashMap<Bitmap,Boolean> cached = new IdentityHashMap<>();
+    //可以复用的bitmap，解码线程也会访问
+    private final List<Bitmap> reusable = new ArrayList<>();
+
+    //统计数据
+    private int decodeCount;
+    private int reuseCount;
+    private long releasedBytes;     //内存不足时释放的字节数
+
+    /**
+     * @param maxBytes 最多缓存的字节数
+     */
+    public IconCache(int maxBytes) {
+        if (maxBytes <= 0){
+            throw new IllegalArgumentException("maxBytes必须大于0！！！");
+        }
+        cache = new LruCache<String,Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue == newValue)return;
+                cached.remove(oldValue);
+                if (!inUse.containsKey(oldValue)){
+                    addReusable(oldValue);
+                }
+            }
+        };
+    }
+
+    //默认大小为应用可用内存的1/8
+    public static IconCache create(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = activityManager == null ? 32 : activityManager.getMemoryClass();
+        return new IconCache(memoryClass * 1024 * 1024 / 8);
+    }
+
+    static String getKey(String icon, int size) {
+        return icon + "@" + size;
+    }
+
+    Bitmap get(String key) {
+        return cache.get(key);
+    }
+
+    void put(String key, Bitmap bitmap) {
+        cached.put(bitmap,Boolean.TRUE);
+        cache.put(key,bitmap);
+    }
+
+    //子view开始显示bitmap
+    void acquire(Bitmap bitmap) {
+        Integer count = inUse.get(bitmap);
+        inUse.put(bitmap,count == null ? 1 : count + 1);
+    }
+
+    //子view不再显示bitmap，已经不在缓存中时可以复用
+    void release(Bitmap bitmap) {
+        Integer count = inUse.get(bitmap);
+        if (count == null)return;
+        if (count > 1){
+            inUse.put(bitmap,count - 1);
+            return;
+        }
+        inUse.remove(bitmap);
+        if (!cached.containsKey(bitmap)){
+            addReusable(bitmap);
+        }
+    }
+
+    private void addReusable(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled())return;
+        synchronized (reusable){
+            if (reusable.size() >= MAX_REUSABLE){
+                reusable.remove(0);
+            }
+            reusable.add(bitmap);
+        }
+    }
+
+    //取出一个足够大的可复用bitmap，选择最小的一个，没有时返回null
+    private Bitmap takeReusable(int byteCount) {
+        synchronized (reusable){
+            int best = -1;
+            for (int i=0; i<reusable.size(); i++){
+                int size = reusable.get(i).getAllocationByteCount();
+                if (size >= byteCount && (best < 0 || size < reusable.get(best).getAllocationByteCount())){
+                    best = i;
+                }
+            }
+            return best < 0 ? null : reusable.remove(best);
+        }
+    }
+
+    /**
+     * 按显示大小解码图标，保持宽高比缩放到size * size以内，可以在任意线程调用
+     * 先按2的幂次采样，再在解码时缩放到精确的大小，不会在内存中产生原图大小的bitmap
+     * @param icon 图标的uri，支持file://、content://、android.resource://
+     * @param size 显示的大小，单位px
+     * @return 解码失败时返回null
+     */
+    Bitmap decode(ContentResolver resolver, String icon, int size) {
+        Uri uri = Uri.parse(icon);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(resolver,uri,options);
+        int srcWidth = options.outWidth;
+        int srcHeight = options.outHeight;
+        if (srcWidth <= 0 || srcHeight <= 0 || size <= 0)return null;
+        float scale = Math.min((float) size / srcWidth,(float) size / srcHeight);
+        int dstWidth = Math.max(1,Math.round(srcWidth * scale));
+        int dstHeight = Math.max(1,Math.round(srcHeight * scale));
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= dstWidth && srcHeight / (sampleSize * 2) >= dstHeight){
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        //采样后再缩放到精确的宽度
+        options.inScaled = true;
+        options.inDensity = srcWidth / sampleSize;
+        options.inTargetDensity = dstWidth;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = takeReusable(dstWidth * dstHeight * 4);
+        boolean reused = options.inBitmap != null;
+        Bitmap bitmap;
+        try {
+            bitmap = decodeStream(resolver,uri,options);
+        }catch (IllegalArgumentException e){
+            //复用的bitmap不合适，不复用重新解码
+            Log.w(TAG,"inBitmap rejected, decode without reuse",e);
+            addReusable(options.inBitmap);
+            options.inBitmap = null;
+            reused = false;
+            bitmap = decodeStream(resolver,uri,options);
+        }
+        if (bitmap == null)return null;
+        //显示时不再按密度缩放
+        bitmap.setDensity(Bitmap.DENSITY_NONE);
+        synchronized (reusable){
+            decodeCount++;
+            if (reused){
+                reuseCount++;
+            }
+        }
+        return bitmap;
+    }
+
+    private static Bitmap decodeStream(ContentResolver resolver, Uri uri, BitmapFactory.Options options) {
+        InputStream input = null;
+        try {
+            input = resolver.openInputStream(uri);
+            return input == null ? null : BitmapFactory.decodeStream(input,null,options);
+        }catch (IOException | SecurityException e){
+            Log.w(TAG,"decode icon failed: " + uri,e);
+            return null;
+        }finally {
+            if (input != null){
+                try {
+                    input.close();
+                }catch (IOException ignored){
+                }
+            }
+        }
+    }
+
+    //解码的次数
+    public int getDecodeCount() {
+        synchronized (reusable){
+            return decodeCount;
+        }
+    }
+
+    //解码时复用了bitmap的次数
+    public int getReuseCount() {
+        synchronized (reusable){
+            return reuseCount;
+        }
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    //当前缓存的字节数
+    public int size() {
+        return cache.size();
+    }
+
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    //内存不足时释放的字节数，正在显示的bitmap不会被释放，不计算在内
+    public long getReleasedBytes() {
+        return releasedBytes;
+    }
+
+    /**
+     * 内存不足时按等级释放，正在显示的bitmap不受影响，多个gridView共用时重复调用不会多释放
+     * @param level ComponentCallbacks2中的TRIM_MEMORY_XXX
+     */
+    public void trimMemory(int level) {
+        int tier = GridViewPool.getTrimTier(level);
+        if (tier == GridViewPool.TRIM_NONE)return;
+        //被淘汰且没有在显示的bitmap会进入复用池，随复用池一起释放
+        if (tier == GridViewPool.TRIM_HALF){
+            cache.trimToSize(cache.maxSize() / 2);
+        }else {
+            cache.evictAll();
+        }
+        synchronized (reusable){
+            for (Bitmap bitmap : reusable){
+                releasedBytes += bitmap.getAllocationByteCount();
+            }
+            reusable.clear();
+        }
+    }
+
+    //清空缓存和复用池，正在显示的bitmap不受影响
+    public void clear() {
+        cache.evictAll();
+        synchronized (reusable){
+            reusable.clear();
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package com.example.customgridview;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-11-16
+ *  @Version 1.0
+ *  @Description 图标+文字的gridView，图标显示在文字上方
+ */
+public final class IconGridView extends WonderfulGridView{
+
+    //默认图标大小
+    private static final int DEFAULT_ICON_SIZE_DP = 48;
+
+    private int iconSize;           //图标大小
+    private int iconPadding;        //图标和文字之间的间隔
+    private int iconPrefetchRows;   //可见区域之外预加载的行数
+
+    //图标的uri，和children一一对应，为null表示没有图标
+    private List<String> icons = new ArrayList<>();
+    private IconCache iconCache;
+    //iconCache是不是自己创建的，自己创建的离开窗口时全部释放
+    private boolean ownIconCache;
+
+    private final Rect visibleRect = new Rect();
+    //加载范围，包括首尾两行
+    private int loadFirstRow;
+    private int loadLastRow = -1;
+    private final ViewTreeObserver.OnScrollChangedListener scrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updateIconLoads();
+        }
+    };
+    private final Runnable updateIconLoadsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateIconLoads();
+        }
+    };
+
+    public IconGridView(Context context) {
+        this(context,(AttributeSet) null);
+    }
+
+    public IconGridView(Context context, AttributeSet attrs) {
+        this(context,attrs,0);
+    }
+
+    public IconGridView(Context context, AttributeSet attrs, int defStyleAttr) {
+        this(context,attrs,defStyleAttr,GridStyle.obtain(context,attrs));
+    }
+
+    //在代码中创建，多个gridView可以共用同一个样式
+    public IconGridView(Context context, GridStyle style) {
+        this(context,null,0,style);
+    }
+
+    private IconGridView(Context context, AttributeSet attrs, int defStyleAttr, GridStyle style) {
+        super(context,attrs,defStyleAttr,style);
+        init(style);
+    }
+
+    //初始化，图标大小为-1时使用默认值
+    private void init(GridStyle style){
+        int defaultIconSize = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,DEFAULT_ICON_SIZE_DP,getResources().getDisplayMetrics());
+        iconSize = style.iconSize < 0 ? defaultIconSize : style.iconSize;
+        iconPadding = style.iconPadding;
+        iconPrefetchRows = style.iconPrefetchRows;
+    }
+
+    //子view的结构和父类不同，不能共用
+    @Override
+    protected int getCellType() {
+        return 2;
+    }
+
+    //有没有图标、图标大小都会影响测量结果
+    @Override
+    protected long hashMeasureContent(long hash, int position) {
+        hash = TextMeasureCache.hash(hash,hasIcon(position) ? iconSize : 0);
+        return super.hashMeasureContent(TextMeasureCache.hash(hash,iconPadding),position);
+    }
+
+    @Override
+    protected View createCell() {
+        TextView textView = (TextView) super.createCell();
+        textView.setCompoundDrawablePadding(iconPadding);
+        return textView;
+    }
+
+    @Override
+    protected void bindCell(View cell, int position, int maxLine) {
+        super.bindCell(cell,position,maxLine);
+        bindIcon((TextView) cell,position);
+    }
+
+    /**
+     * 绑定图标，缓存中有时直接显示，否则先占位，等进入加载范围后再加载
+     * 图标相同时不做任何处理，正在进行的加载也不会中断
+     */
+    private void bindIcon(TextView cell, int position){
+        IconRequest request = (IconRequest) cell.getTag(R.id.grid_cell_icon);
+        //先比较再创建key，图标没有变化时不分配内存
+        if (request == null ? !hasIcon(position) : request.size == iconSize && isIcon(position,request.icon))return;
+        String icon = icons.get(position);
+        String key = icon == null ? null : IconCache.getKey(icon,iconSize);
+        clearIcon(cell);
+        IconDrawable drawable = getIconDrawable(cell);
+        if (key == null){
+            if (drawable != null){
+                cell.setCompoundDrawables(null,null,null,null);
+            }
+            return;
+        }
+        //图标占用的位置不随加载状态变化
+        if (drawable == null || drawable.size != iconSize){
+            drawable = new IconDrawable(iconSize);
+            cell.setCompoundDrawables(null,drawable,null,null);
+        }
+        request = new IconRequest(icon,key,iconSize);
+        cell.setTag(R.id.grid_cell_icon,request);
+        Bitmap bitmap = getIconCache().get(key);
+        if (bitmap != null){
+            showIcon(cell,request,bitmap);
+        }
+    }
+
+    private static IconDrawable getIconDrawable(TextView cell){
+        Drawable drawable = cell.getCompoundDrawables()[1];
+        return drawable instanceof IconDrawable ? (IconDrawable) drawable : null;
+    }
+
+    private void showIcon(TextView cell, IconRequest request, Bitmap bitmap){
+        request.bitmap = bitmap;
+        getIconCache().acquire(bitmap);
+        IconDrawable drawable = getIconDrawable(cell);
+        if (drawable != null){
+            drawable.setBitmap(bitmap);
+        }
+    }
+
+    //取消加载并释放子view显示的图标
+    private void clearIcon(TextView cell){
+        IconRequest request = (IconRequest) cell.getTag(R.id.grid_cell_icon);
+        if (request == null)return;
+        request.cancel();
+        if (request.bitmap != null){
+            getIconCache().release(request.bitmap);
+        }
+        cell.setTag(R.id.grid_cell_icon,null);
+        IconDrawable drawable = getIconDrawable(cell);
+        if (drawable != null){
+            drawable.setBitmap(null);
+        }
+    }
+
+    //在后台线程解码，完成后在主线程放入缓存，子view还需要这个图标时显示
+    private void startLoad(final TextView cell, final IconRequest request){
+        final IconCache cache = getIconCache();
+        final ContentResolver resolver = context.getContentResolver();
+        final int size = iconSize;
+        request.loading = true;
+        request.future = GridExecutors.decode().submit(new Runnable() {
+            @Override
+            public void run() {
+                if (request.canceled)return;
+                final Bitmap bitmap = cache.decode(resolver,request.icon,size);
+                GridExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        request.loading = false;
+                        request.future = null;
+                        if (bitmap == null){
+                            request.failed = true;
+                            return;
+                        }
+                        //已经解码完成，即使取消了也放入缓存
+                        cache.put(request.key,bitmap);
+                        if (request.canceled || cell.getTag(R.id.grid_cell_icon) != request)return;
+                        showIcon(cell,request,bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    //离开加载范围，取消加载，回到范围内时重新加载
+    private void cancelLoad(TextView cell, IconRequest request){
+        request.cancel();
+        cell.setTag(R.id.grid_cell_icon,new IconRequest(request.icon,request.key,request.size));
+    }
+
+    //计算加载范围：可见区域及附近iconPrefetchRows行，不可见时为空
+    private void updateLoadRange(){
+        loadFirstRow = 0;
+        loadLastRow = -1;
+        if (isAttachedToWindow() && getRowCount() > 0 && getLocalVisibleRect(visibleRect)){
+            loadFirstRow = getRowAt(visibleRect.top) - iconPrefetchRows;
+            loadLastRow = getRowAt(visibleRect.bottom - 1) + iconPrefetchRows;
+        }
+    }
+
+    private boolean isInLoadRange(int position){
+        int row = getRowOfPosition(position);
+        return row >= loadFirstRow && row <= loadLastRow;
+    }
+
+    //加载范围内的图标，缓存中有时直接显示，取消范围之外还没完成的加载
+    private void updateIconLoads(){
+        if (getChildCount() == 0)return;
+        updateLoadRange();
+        for (int i=0; i<getChildCount(); i++){
+            TextView cell = (TextView) getChildAt(i);
+            IconRequest request = (IconRequest) cell.getTag(R.id.grid_cell_icon);
+            if (request == null || request.bitmap != null || request.failed)continue;
+            boolean inRange = isInLoadRange(i);
+            if (inRange && !request.loading){
+                Bitmap bitmap = getIconCache().get(request.key);
+                if (bitmap != null){
+                    showIcon(cell,request,bitmap);
+                }else {
+                    startLoad(cell,request);
+                }
+            }else if (!inRange && request.loading){
+                cancelLoad(cell,request);
+            }
+        }
+    }
+
+    /**
+     * 子view不再持有图标并取消还没完成的加载，回到加载范围时重新加载
+     * @param all true：全部子view false：加载范围之外的子view
+     */
+    private void unloadIcons(boolean all){
+        if (!all){
+            updateLoadRange();
+        }
+        for (int i=0; i<getChildCount(); i++){
+            TextView cell = (TextView) getChildAt(i);
+            IconRequest request = (IconRequest) cell.getTag(R.id.grid_cell_icon);
+            if (request == null || (request.bitmap == null && !request.loading))continue;
+            if (!all && isInLoadRange(i))continue;
+            if (request.bitmap != null){
+                getIconCache().release(request.bitmap);
+                IconDrawable drawable = getIconDrawable(cell);
+                if (drawable != null){
+                    drawable.setBitmap(null);
+                }
+            }
+            cancelLoad(cell,request);
+        }
+    }
+
+    /**
+     * 内存不足时除了父类释放的内容，内存严重不足或者应用进入后台时，加载范围之外的子view也不再持有图标，
+     * 再按等级释放图标缓存，正在显示的图标不受影响
+     */
+    @Override
+    public void trimMemory(int level) {
+        super.trimMemory(level);
+        int tier = GridViewPool.getTrimTier(level);
+        if (tier == GridViewPool.TRIM_ALL){
+            unloadIcons(false);
+        }
+        if (iconCache != null){
+            iconCache.trimMemory(level);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean b, int i0, int i1, int i2, int i3) {
+        super.onLayout(b,i0,i1,i2,i3);
+        updateIconLoads();
+    }
+
+    @Override
+    protected void onCellRecycled(View cell) {
+        clearIcon((TextView) cell);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(scrollChangedListener);
+        //离开窗口时图标全部释放了，重新附加时不一定会重新摆放
+        post(updateIconLoadsRunnable);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnScrollChangedListener(scrollChangedListener);
+        removeCallbacks(updateIconLoadsRunnable);
+        //释放所有子view持有的图标，取消所有还没完成的加载
+        unloadIcons(true);
+        //自己的缓存只有这一个gridView使用，全部释放
+        if (ownIconCache){
+            iconCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
+    /**
+     * 设置图标缓存，多个gridView可以共用一个
+     * @param iconCache 为null时使用自己的缓存
+     */
+    public void setIconCache(IconCache iconCache){
+        if (this.iconCache == iconCache)return;
+        //已经显示的图标属于原来的缓存，先全部释放
+        for (int i=0; i<getChildCount(); i++){
+            clearIcon((TextView) getChildAt(i));
+        }
+        this.iconCache = iconCache;
+        ownIconCache = false;
+        requestRefresh();
+    }
+
+    public IconCache getIconCache(){
+        if (iconCache == null){
+            iconCache = IconCache.create(context);
+            ownIconCache = true;
+        }
+        return iconCache;
+    }
+
+    //设置图标大小，图标按新的大小重新解码
+    public void setIconSize(int iconSize){
+        if (iconSize <= 0 || this.iconSize == iconSize)return;
+        this.iconSize = iconSize;
+        requestRefresh();
+    }
+
+    //位置上有没有图标，紧凑存储时不创建String
+    private boolean hasIcon(int position){
+        if (icons instanceof CompactLabelStore){
+            return !((CompactLabelStore) icons).isNull(position);
+        }
+        return icons.get(position) != null;
+    }
+
+    //位置上的图标是不是icon，紧凑存储时直接比较字符
+    private boolean isIcon(int position, String icon){
+        if (icons instanceof CompactLabelStore){
+            return ((CompactLabelStore) icons).labelEquals(position,icon);
+        }
+        return TextUtils.equals(icons.get(position),icon);
+    }
+
+    //uri重复很多时，紧凑存储对内容相同的uri去重
+    @Override
+    public void setCompactStorage(boolean compact) {
+        super.setCompactStorage(compact);
+        if (compact != icons instanceof CompactLabelStore){
+            icons = convertStore(icons,compact,true);
+        }
+    }
+
+    @Override
+    public long getLabelFootprint() {
+        return super.getLabelFootprint() + getFootprint(icons);
+    }
+
+    @Override
+    public void removeAll() {
+        prepareItemAnimation(Collections.<String>emptyList());
+        this.children.clear();
+        this.icons.clear();
+        onDataChanged();
+        resetSelection();
+        requestRefresh();
+    }
+
+    @Override
+    public void addChildrenView(List<String> children) {
+        throw new RuntimeException("请使用二参的addChildrenView重载方法！！！");
+    }
+
+    public void addChildrenView(List<String> children, List<String> icons) {
+        if (children == null || icons == null)return;
+        if (children.size() != icons.size()){
+            throw new IllegalArgumentException("children和icons的数量必须一致！！！");
+        }
+        this.children.addAll(children);
+        this.icons.addAll(icons);
+        onDataChanged();
+        applyPendingRestore();
+    }
+
+    @Override
+    public void appendItems(List<String> items) {
+        throw new RuntimeException("请使用二参的appendItems重载方法！！！");
+    }
+
+    public void appendItems(List<String> items, List<String> icons) {
+        if (items == null || icons == null)return;
+        if (items.size() != icons.size()){
+            throw new IllegalArgumentException("items和icons的数量必须一致！！！");
+        }
+        this.icons.addAll(icons);
+        super.appendItems(items);
+    }
+
+    //禁止使用此方法
+    @Override
+    public void refresh(List<String> children) {
+        throw new RuntimeException("请使用二参的refresh重载方法！！！");
+    }
+
+    public void refresh(List<String> children, List<String> icons) {
+        if (children == null || icons == null)return;
+        if (children.size() != icons.size()){
+            throw new IllegalArgumentException("children和icons的数量必须一致！！！");
+        }
+        prepareItemAnimation(children);
+        this.children.clear();
+        this.children.addAll(children);
+        this.icons.clear();
+        this.icons.addAll(icons);
+        onDataChanged();
+        resetSelection();
+        applyPendingRestore();
+        requestRefresh();
+    }
+
+    //禁止使用此方法
+    @Override
+    public void submitList(List<String> list) {
+        throw new RuntimeException("请使用二参的submitList重载方法！！！");
+    }
+
+    /**
+     * 提交新数据，可以在任意线程调用，提交后调用方不能再修改两个列表
+     * @param children 内容
+     * @param icons 图标的uri
+     */
+    public void submitList(List<String> children, List<String> icons) {
+        if (children == null || icons == null)return;
+        if (children.size() != icons.size()){
+            throw new IllegalArgumentException("children和icons的数量必须一致！！！");
+        }
+        submit(children,icons);
+    }
+
+    @Override
+    protected void onListSubmitted(List<String> list, List<String> extra, GridDiff diff) {
+        super.onListSubmitted(list,extra,diff);
+        //内容没有变化时不会重新测量，图标变化了需要自己刷新
+        boolean iconsChanged = !icons.equals(extra);
+        icons.clear();
+        icons.addAll(extra);
+        if (iconsChanged){
+            requestRefresh();
+        }
+    }
+
+    //一次图标加载，子view重新绑定或者被移除时取消
+    private static class IconRequest{
+
+        private final String icon;
+        private final String key;
+        private final int size;
+        private Future<?> future;
+        private volatile boolean canceled;
+        private boolean loading;
+        private boolean failed;
+        private Bitmap bitmap;
+
+        IconRequest(String icon, String key, int size){
+            this.icon = icon;
+            this.key = key;
+            this.size = size;
+        }
+
+        void cancel(){
+            canceled = true;
+            if (future != null){
+                future.cancel(false);
+                future = null;
+            }
+        }
+    }
+
+    //固定大小的图标，bitmap居中绘制，更换bitmap只重绘
+    private static class IconDrawable extends Drawable{
+
+        private final int size;
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private Bitmap bitmap;
+
+        IconDrawable(int size){
+            this.size = size;
+            setBounds(0,0,size,size);
+        }
+
+        void setBitmap(Bitmap bitmap){
+            if (this.bitmap == bitmap)return;
+            this.bitmap = bitmap;
+            invalidateSelf();
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            if (bitmap == null)return;
+            Rect bounds = getBounds();
+            float left = bounds.left + (bounds.width() - bitmap.getWidth()) / 2f;
+            float top = bounds.top + (bounds.height() - bitmap.getHeight()) / 2f;
+            canvas.drawBitmap(bitmap,left,top,paint);
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return size;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return size;
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            paint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            paint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+}
@@ -55,6 +55,14 @@ public class MainActivity extends AppCompatActivity {
         children4.addAll(children1);
         content.addAll(children1);
 
+        //样式相同的gridView共用子view池和测量缓存
+        GridViewPool viewPool = new GridViewPool();
+        wonderfulGridView1.setViewPool(viewPool);
+        wonderfulGridView2.setViewPool(viewPool);
+        wonderfulGridView3.setViewPool(viewPool);
+        wonderfulGridView4.setViewPool(viewPool);
+        tabContentGridView.setViewPool(viewPool);
+
         wonderfulGridView1.addChildrenView(children1);
         wonderfulGridView2.addChildrenView(children2);
         wonderfulGridView3.addChildrenView(children3);
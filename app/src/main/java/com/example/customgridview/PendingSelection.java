@@ -0,0 +1,116 @@
+package com.example.customgridview;
+
+import android.util.SparseArray;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-9-12
+ *  @Version 1.0
+ *  @Description 待处理的选中操作队列，在下一次测量绑定子view之前合并成一次状态修改
+ */
+class PendingSelection {
+
+    static final int SELECT_POSITION = 1;
+    static final int CLEAR_POSITION = 2;
+    static final int SELECT_ITEM = 3;
+    static final int CLEAR_ITEM = 4;
+    static final int CLEAR_ALL = 5;
+
+    //被合并掉的操作
+    private static final int CANCELED = 0;
+
+    private final List<Op> ops = new ArrayList<>();
+    //每个位置最近一次的操作，用于合并同一位置的多次操作
+    private final SparseArray<Op> positionOps = new SparseArray<>();
+
+    boolean isEmpty() {
+        return ops.isEmpty();
+    }
+
+    void clear() {
+        ops.clear();
+        positionOps.clear();
+    }
+
+    void add(int type, int position) {
+        add(type,position,false);
+    }
+
+    /**
+     * @param clearsGroup 选中时是否同时清除同一组的其他选中项(单选模式)，
+     *                    这样的选中操作去掉后结果不同，不能被同一位置之后的操作合并掉
+     */
+    void add(int type, int position, boolean clearsGroup) {
+        if (type == CLEAR_ALL){
+            //清除所有之前的操作都不需要再执行了
+            clear();
+        }else {
+            //同一位置只保留最后一次操作
+            Op previous = positionOps.get(position);
+            if (previous != null && !previous.clearsGroup){
+                previous.type = CANCELED;
+            }
+        }
+        Op op = new Op(type,position,null);
+        op.clearsGroup = clearsGroup && type == SELECT_POSITION;
+        ops.add(op);
+        if (type != CLEAR_ALL){
+            positionOps.put(position,op);
+        }
+    }
+
+    void add(int type, String item) {
+        ops.add(new Op(type,-1,item));
+    }
+
+    //按顺序应用到选中状态上
+    void apply(Target target) {
+        for (int i=0; i<ops.size(); i++){
+            Op op = ops.get(i);
+            switch (op.type){
+                case SELECT_POSITION:
+                    target.selectState(op.position);
+                    break;
+                case CLEAR_POSITION:
+                    target.clearState(op.position);
+                    break;
+                case SELECT_ITEM:
+                    target.selectState(op.item);
+                    break;
+                case CLEAR_ITEM:
+                    target.clearState(op.item);
+                    break;
+                case CLEAR_ALL:
+                    target.clearAllState();
+                    break;
+                default:
+                    break;
+            }
+        }
+        clear();
+    }
+
+    //只修改选中状态，不设置子view样式
+    interface Target {
+        void selectState(int position);
+        void clearState(int position);
+        void selectState(String item);
+        void clearState(String item);
+        void clearAllState();
+    }
+
+    private static class Op {
+        int type;
+        boolean clearsGroup;
+        final int position;
+        final String item;
+
+        Op(int type, int position, String item) {
+            this.type = type;
+            this.position = position;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.customgridview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.ViewTreeObserver;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-10-9
+ *  @Version 1.0
+ *  @Description 分组gridView，每个分组从新的一行开始，上方显示分组标题
+ */
+public final class SectionGridView extends WonderfulGridView{
+
+    //选择范围 全局，单选模式下所有分组中只能选中一项
+    public static final int SCOPE_GLOBAL = 0;
+    //选择范围 每个分组，单选模式下每个分组各自可以选中一项
+    public static final int SCOPE_SECTION = 1;
+
+    //分组标题和每个分组的数量，和children对应
+    private final List<String> sectionTitles = new ArrayList<>();
+    private int[] sectionSizes = new int[0];
+
+    //标题样式
+    private final Paint headerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint headerBackgroundPaint = new Paint();
+    private int headerPadding;
+    private int headerHeight;       //标题的高度，包括上下padding
+    private boolean stickyHeader;   //标题是否吸顶
+    private int selectionScope;     //选择范围
+
+    //行表，由分组数量和列数计算，数据或列数变化时重新计算
+    private boolean tableDirty = true;
+    private int tableColumn;
+    private int tableItemCount;
+    private int rowCount;
+    private int[] rowStarts = new int[]{0};         //每行第一个子view的位置，最后多一个元素等于数据总数
+    private int[] rowSections = new int[0];         //每行所在的分组
+    private int[] tableSizes = new int[0];          //实际使用的分组数量，数据和分组不一致时整体作为一个没有标题的分组
+    private List<String> tableTitles = sectionTitles;
+    private int[] sectionFirstRows = new int[0];    //每个分组的第一行
+    private int[] headerOffsets = new int[0];       //截止到每个分组(包括自己)的所有标题高度之和
+    private int extraHeight;                        //所有标题的高度之和
+
+    //吸顶标题
+    private final Rect visibleRect = new Rect();
+    private final Rect stickyRect = new Rect();
+    private boolean stickyVisible;
+    private boolean stickyTouching;
+    private int lastVisibleTop = -1;
+    //滑动时只需要重绘标题
+    private final ViewTreeObserver.OnScrollChangedListener scrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            if (!stickyHeader)return;
+            int top = getLocalVisibleRect(visibleRect) ? visibleRect.top : -1;
+            if (top != lastVisibleTop){
+                lastVisibleTop = top;
+                invalidate();
+            }
+        }
+    };
+
+    public SectionGridView(Context context) {
+        this(context,(AttributeSet) null);
+    }
+
+    public SectionGridView(Context context, AttributeSet attrs) {
+        this(context,attrs,0);
+    }
+
+    public SectionGridView(Context context, AttributeSet attrs, int defStyleAttr) {
+        this(context,attrs,defStyleAttr,GridStyle.obtain(context,attrs));
+    }
+
+    //在代码中创建，多个gridView可以共用同一个样式
+    public SectionGridView(Context context, GridStyle style) {
+        this(context,null,0,style);
+    }
+
+    private SectionGridView(Context context, AttributeSet attrs, int defStyleAttr, GridStyle style) {
+        super(context,attrs,defStyleAttr,style);
+        init(style);
+    }
+
+    //初始化，尺寸为-1时使用默认值
+    private void init(GridStyle style){
+
+        float defaultTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,14,getResources().getDisplayMetrics());
+        int defaultPadding = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,8,getResources().getDisplayMetrics());
+        headerPaint.setTextSize(style.sectionHeaderTextSize < 0 ? defaultTextSize : style.sectionHeaderTextSize);
+        headerPaint.setColor(style.sectionHeaderTextColor);
+        headerBackgroundPaint.setColor(style.sectionHeaderBackground);
+        headerPadding = style.sectionHeaderPadding < 0 ? defaultPadding : style.sectionHeaderPadding;
+        stickyHeader = style.stickyHeader;
+        selectionScope = style.selectionScope;
+
+        updateHeaderHeight();
+    }
+
+    private void updateHeaderHeight(){
+        Paint.FontMetricsInt fm = headerPaint.getFontMetricsInt();
+        headerHeight = fm.descent - fm.ascent + headerPadding * 2;
+        tableDirty = true;
+    }
+
+    /**
+     * 设置分组数据
+     * @param titles 每个分组的标题，为null的分组不显示标题
+     * @param sections 每个分组的数据，没有数据的分组不显示
+     */
+    public void setSections(List<String> titles, List<List<String>> sections){
+        if (titles == null || sections == null)return;
+        if (titles.size() != sections.size()){
+            throw new IllegalArgumentException("titles和sections的数量必须一致！！！");
+        }
+        List<String> flat = new ArrayList<>();
+        int[] sizes = new int[sections.size()];
+        for (int i=0; i<sections.size(); i++){
+            List<String> section = sections.get(i);
+            sizes[i] = section == null ? 0 : section.size();
+            if (section != null){
+                flat.addAll(section);
+            }
+        }
+        prepareItemAnimation(flat);
+        children.clear();
+        children.addAll(flat);
+        onDataChanged();
+        //onDataChanged会清除分组，放在后面设置
+        sectionTitles.addAll(titles);
+        sectionSizes = sizes;
+        resetSelection();
+        applyPendingRestore();
+        requestRefresh();
+    }
+
+    //数据不是通过setSections修改的，之前的分组失效，整体作为一个没有标题的分组
+    @Override
+    protected void onDataChanged() {
+        super.onDataChanged();
+        sectionTitles.clear();
+        sectionSizes = new int[0];
+        tableDirty = true;
+    }
+
+    @Override
+    public void submitList(List<String> list) {
+        throw new RuntimeException("请使用setSections设置分组数据！！！");
+    }
+
+    @Override
+    public void appendItems(List<String> items) {
+        throw new RuntimeException("请使用setSections设置分组数据！！！");
+    }
+
+    //分组的行表按位置计算，不支持过滤
+    @Override
+    public void setFilter(CharSequence query) {
+        throw new RuntimeException("SectionGridView不支持过滤！！！");
+    }
+
+    //计算行表，每个分组从新的一行开始
+    private void ensureTable(){
+        int column = getColumn();
+        int total = children.size();
+        if (!tableDirty && tableColumn == column && tableItemCount == total)return;
+        tableDirty = false;
+        tableColumn = column;
+        tableItemCount = total;
+
+        int[] sizes = sectionSizes;
+        List<String> titles = sectionTitles;
+        int sum = 0;
+        for (int size : sizes){
+            sum += size;
+        }
+        if (sum != total || sizes.length == 0){
+            sizes = new int[]{total};
+            titles = new ArrayList<>();
+            titles.add(null);
+        }
+
+        int rows = 0;
+        for (int size : sizes){
+            rows += (size + column - 1) / column;
+        }
+        rowCount = rows;
+        rowStarts = new int[rows + 1];
+        rowSections = new int[rows];
+        sectionFirstRows = new int[sizes.length];
+        headerOffsets = new int[sizes.length];
+        int row = 0;
+        int position = 0;
+        int offset = 0;
+        for (int s=0; s<sizes.length; s++){
+            sectionFirstRows[s] = row;
+            offset += getHeaderHeight(titles.get(s),sizes[s]);
+            headerOffsets[s] = offset;
+            for (int p=0; p<sizes[s]; p+=column){
+                rowStarts[row] = position + p;
+                rowSections[row] = s;
+                row++;
+            }
+            position += sizes[s];
+        }
+        rowStarts[rows] = total;
+        extraHeight = offset;
+        tableSizes = sizes;
+        tableTitles = titles;
+    }
+
+    //没有标题或者没有数据的分组不显示标题
+    private int getHeaderHeight(String title, int size){
+        return title == null || size == 0 ? 0 : headerHeight;
+    }
+
+    @Override
+    int getRowCount() {
+        ensureTable();
+        return rowCount;
+    }
+
+    @Override
+    int getRowStart(int row) {
+        ensureTable();
+        return rowStarts[Math.max(0,Math.min(row,rowCount))];
+    }
+
+    @Override
+    int getRowEnd(int row) {
+        ensureTable();
+        if (row < 0 || row >= rowCount)return getRowStart(row);
+        return Math.min(rowStarts[row + 1],getChildCount());
+    }
+
+    //二分查找位置所在的行
+    @Override
+    int getRowOfPosition(int position) {
+        ensureTable();
+        int low = 0;
+        int high = rowCount - 1;
+        while (low < high){
+            int mid = (low + high + 1) >>> 1;
+            if (rowStarts[mid] <= position){
+                low = mid;
+            }else {
+                high = mid - 1;
+            }
+        }
+        return Math.max(0,low);
+    }
+
+    @Override
+    int getRowTop(int row) {
+        ensureTable();
+        if (rowCount == 0)return getPaddingTop();
+        row = Math.max(0,Math.min(row,rowCount - 1));
+        return getPaddingTop() + row * getRowHeight() + headerOffsets[rowSections[row]];
+    }
+
+    //二分查找y坐标所在的行，在标题上时取上面一行
+    @Override
+    int getRowAt(int y) {
+        ensureTable();
+        if (rowCount == 0 || getRowHeight() <= 0)return 0;
+        int low = 0;
+        int high = rowCount - 1;
+        while (low < high){
+            int mid = (low + high + 1) >>> 1;
+            if (getRowTop(mid) <= y){
+                low = mid;
+            }else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    int getExtraHeight() {
+        ensureTable();
+        return extraHeight;
+    }
+
+    //分组的标题顶部，相对于gridView
+    private int getHeaderTop(int section){
+        int height = getHeaderHeight(tableTitles.get(section),tableSizes[section]);
+        return getPaddingTop() + sectionFirstRows[section] * getRowHeight() + headerOffsets[section] - height;
+    }
+
+    //标题画在子view之后，吸顶标题可以盖住滑到下面的子view
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        ensureTable();
+        stickyVisible = false;
+        if (getChildCount() == 0)return;
+        for (int s=0; s<tableSizes.length; s++){
+            if (getHeaderHeight(tableTitles.get(s),tableSizes[s]) == 0)continue;
+            drawHeader(canvas,s,getHeaderTop(s));
+        }
+        if (stickyHeader && getLocalVisibleRect(visibleRect)){
+            drawStickyHeader(canvas,visibleRect.top);
+        }
+    }
+
+    //标题滑出可见区域时画在可见区域顶部，被下一个标题顶上去
+    private void drawStickyHeader(Canvas canvas, int visibleTop){
+        int section = rowSections.length == 0 ? 0 : rowSections[getRowAt(visibleTop)];
+        if (section >= tableSizes.length || getHeaderHeight(tableTitles.get(section),tableSizes[section]) == 0)return;
+        if (getHeaderTop(section) >= visibleTop)return;
+        int top = visibleTop;
+        for (int next=section + 1; next<tableSizes.length; next++){
+            if (getHeaderHeight(tableTitles.get(next),tableSizes[next]) == 0)continue;
+            top = Math.min(top,getHeaderTop(next) - headerHeight);
+            break;
+        }
+        drawHeader(canvas,section,top);
+        stickyRect.set(0,top,getWidth(),top + headerHeight);
+        stickyVisible = true;
+    }
+
+    private void drawHeader(Canvas canvas, int section, int top){
+        canvas.drawRect(getPaddingLeft(),top,getWidth() - getPaddingRight(),top + headerHeight,headerBackgroundPaint);
+        float baseline = top + headerPadding - headerPaint.getFontMetricsInt().ascent;
+        canvas.drawText(tableTitles.get(section),getPaddingLeft() + headerPadding,baseline,headerPaint);
+    }
+
+    //吸顶标题盖住的子view不响应点击
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if (ev.getActionMasked() == MotionEvent.ACTION_DOWN && stickyVisible
+                && stickyRect.contains((int) ev.getX(),(int) ev.getY())){
+            stickyTouching = true;
+            return true;
+        }
+        return super.onInterceptTouchEvent(ev);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!stickyTouching)return super.onTouchEvent(event);
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL){
+            stickyTouching = false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(scrollChangedListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        getViewTreeObserver().removeOnScrollChangedListener(scrollChangedListener);
+    }
+
+    //单选模式下按分组选择时，每个分组是独立的一组
+    @Override
+    protected int getSelectionGroup(int position) {
+        return selectionScope == SCOPE_SECTION ? getSectionForPosition(position) : 0;
+    }
+
+    //设置选择范围，已经选中的项会被清除
+    public void setSelectionScope(int selectionScope) {
+        if (selectionScope != SCOPE_GLOBAL && selectionScope != SCOPE_SECTION){
+            throw new IllegalArgumentException("不支持的选择范围：" + selectionScope + "！！！");
+        }
+        if (this.selectionScope == selectionScope)return;
+        this.selectionScope = selectionScope;
+        clearAll();
+    }
+
+    public int getSelectionScope() {
+        return selectionScope;
+    }
+
+    //设置标题是否吸顶，需要放在可滑动的父容器中
+    public void setStickyHeader(boolean stickyHeader) {
+        if (this.stickyHeader == stickyHeader)return;
+        this.stickyHeader = stickyHeader;
+        invalidate();
+    }
+
+    //设置标题字体大小，单位px
+    public void setHeaderTextSize(float textSize) {
+        headerPaint.setTextSize(textSize);
+        updateHeaderHeight();
+        requestRefresh();
+    }
+
+    public void setHeaderTextColor(int color) {
+        headerPaint.setColor(color);
+        invalidate();
+    }
+
+    public void setHeaderBackgroundColor(int color) {
+        headerBackgroundPaint.setColor(color);
+        invalidate();
+    }
+
+    //分组的数量，包括没有数据的分组
+    public int getSectionCount() {
+        ensureTable();
+        return tableSizes.length;
+    }
+
+    public String getSectionTitle(int section) {
+        ensureTable();
+        return tableTitles.get(section);
+    }
+
+    //位置所在的分组
+    public int getSectionForPosition(int position) {
+        ensureTable();
+        int start = 0;
+        for (int s=0; s<tableSizes.length; s++){
+            start += tableSizes[s];
+            if (position < start)return s;
+        }
+        return tableSizes.length - 1;
+    }
+
+    //分组第一项的位置
+    public int getPositionForSection(int section) {
+        ensureTable();
+        int position = 0;
+        for (int s=0; s<section && s<tableSizes.length; s++){
+            position += tableSizes[s];
+        }
+        return position;
+    }
+}
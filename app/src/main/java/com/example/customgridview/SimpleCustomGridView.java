@@ -1,21 +1,38 @@
 package com.example.customgridview;
 
 import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.content.res.Configuration;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.StateListDrawable;
+import android.os.Looper;
+import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.Display;
 import android.view.Gravity;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.TextView;
 import androidx.core.content.ContextCompat;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.view.ViewCompat;
+import androidx.core.widget.TextViewCompat;
+import com.example.customgridview.layout.GridLayoutEngine;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import static android.content.Context.WINDOW_SERVICE;
 
 /**
@@ -27,6 +44,14 @@ import static android.content.Context.WINDOW_SERVICE;
 public class SimpleCustomGridView extends ViewGroup {
 
     private static final String TAG = "SimpleCustomGridView";
+    //默认最多缓存的测量结果数量
+    private static final int DEFAULT_MEASURE_CACHE_SIZE = 256;
+    //静态渲染时内容稳定多久之后开启硬件层(ms)
+    private static final int STATIC_LAYER_DELAY = 300;
+    //硬件层的最大边长，多数GPU支持的最大纹理尺寸不小于这个值
+    private static final int MAX_LAYER_SIZE = 4096;
+    //被禁用的子view的透明度
+    private static final float DISABLED_ALPHA = 0.4f;
 
     private int column;              //列数，默认一列
     private int gapVertical;         //每列中间的间隔
@@ -53,9 +78,146 @@ public class SimpleCustomGridView extends ViewGroup {
     protected List<String> children = new ArrayList<>();//数据源
 
     private ItemClickListener itemClickListener;
+    private ItemLongClickListener itemLongClickListener;
+
+    //所有子view共用的点击监听，通过子view在gridView中的位置区分，重新绑定时不需要创建新的监听
+    private final View.OnClickListener cellClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int position = indexOfChild(v);
+            if (position >= 0 && position < children.size()){
+                onItemClick(position,children.get(position));
+            }
+        }
+    };
+    private final View.OnLongClickListener cellLongClickListener = new View.OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            int position = indexOfChild(v);
+            return position >= 0 && position < children.size() && onItemLongClick(position,children.get(position));
+        }
+    };
+
+    //多个gridView共用的子view池和测量缓存，默认不开启
+    private GridViewPool viewPool;
+    //使用测量缓存时第一次测量的结果，下标和子view一致
+    private int[] cellWidths = new int[0];
+    private int[] cellHeights = new int[0];
+    //没有设置子view池时使用自己的测量缓存
+    private TextMeasureCache measureCache;
+
+    //子view增删移动动画，默认不开启
+    private GridItemAnimator itemAnimator;
+    //等待应用到子view上的差异
+    private GridDiff pendingItemDiff;
+
+    //延迟绑定样式，默认不开启
+    private DeferredStyleBinder styleBinder;
+    //卡顿监控，默认不开启
+    private GridJankMonitor jankMonitor;
+    //静态渲染缓存，默认不开启，软件绘制时每一行录制成一个Picture，下标是行
+    private boolean staticRendering;
+    private Picture[] rowPictures;
+    private boolean[] dirtyRows;
+    private final Rect dirtyRect = new Rect();
+    private final Rect clipRect = new Rect();
+    //静态渲染时开启的硬件层，内容变化时去掉，稳定后重新开启
+    private boolean staticLayer;
+    private final Runnable staticLayerRunnable = new Runnable() {
+        @Override
+        public void run() {
+            enableStaticLayer();
+        }
+    };
+    //统计数据
+    private int recordedRows;           //录制的行数
+    private int replayedRows;           //直接使用缓存的行数
+    //虚拟无障碍节点，默认不开启
+    private GridAccessibilityHelper accessibilityHelper;
+    //大于0时屏蔽requestLayout
+    private int interceptRequestLayout;
+
+    //批量更新的嵌套层数，大于0时数据、选中、样式的修改只记录，提交时统一刷新一次
+    private int batchDepth;
+    //批量更新期间是否有刷新请求
+    private boolean batchRefreshRequested;
+    //统计数据，用于测试刷新次数
+    private int refreshCount;           //实际发出的刷新请求次数
+    private int measureCount;           //测量次数
+    private int layoutCount;            //摆放次数
+    private int releasedViews;          //内存不足时释放的子view数量
+    private long releasedBytes;         //内存不足、离开窗口时释放的缓存字节数(估算)
+
+    //内存不足时按等级释放，附加到窗口期间注册在Application上
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    };
+
+    //submitList的版本号，后台处理完成时版本号已经变化说明有更新的提交，丢弃当前结果
+    private final AtomicInteger submitGeneration = new AtomicInteger();
+    //上一次submitList发布的数据，作为下一次计算差异的基准，只在主线程读写，为null时提交前取当前数据的快照
+    private volatile List<String> submittedList;
+    //数据版本号，每次数据发生变化都会增加，用于判断后台计算的差异是否还有效
+    private volatile int dataVersion;
+    //文字预测量参数，和子view的字体设置一致，为null时不预测量
+    private volatile PrecomputedTextCompat.Params textMetricsParams;
+    //预测量的文字，和children一一对应，为null表示没有
+    protected volatile CharSequence[] precomputedTexts;
+
+    //过滤条件，已经规范化，为null表示不过滤
+    private String filterQuery;
+    //过滤索引，数据变化后重新建立
+    private GridFilterIndex filterIndex;
+    //过滤索引对应的数据版本号
+    private int filterVersion;
+    //过滤后可见的位置，按位置递增，为null表示全部可见
+    private int[] visiblePositions;
+    private int visibleCount;
+    //几何计算，不依赖Android
+    private final GridLayoutEngine layoutEngine = new GridLayoutEngine(1);
+
+    //追加数据的起始位置，下一次测量时只测量追加的子view，-1表示没有追加，-2表示有其他刷新请求，必须完整测量
+    private int appendFrom = -1;
+    //上一次完整测量的宽度约束，变化后不能只测量追加的子view
+    private int lastWidthMeasureSpec = -1;
+    //上一次完整测量的高度约束，只重新绑定一个子view时以同样的约束测量
+    private int lastHeightMeasureSpec = -1;
+    //下一次摆放开始的行，追加时之前的行不需要重新摆放
+    private int layoutFromRow;
+    //加载更多
+    private LoadMoreListener loadMoreListener;
+    //距离最后一行还有多少行时通知加载更多
+    private int loadMoreThreshold;
+    //已经通知过加载更多，追加数据之前不再通知
+    private boolean loadMoreRequested;
+    private final Rect visibleRect = new Rect();
+    private final ViewTreeObserver.OnScrollChangedListener loadMoreScrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            checkLoadMore();
+        }
+    };
+    private final Runnable checkLoadMoreRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkLoadMore();
+        }
+    };
 
     public SimpleCustomGridView(Context context) {
-        this(context, null);
+        this(context,(AttributeSet) null);
     }
 
     public SimpleCustomGridView(Context context, AttributeSet attrs) {
@@ -63,34 +225,51 @@ public class SimpleCustomGridView extends ViewGroup {
     }
 
     public SimpleCustomGridView(Context context, AttributeSet attrs, int defStyleAttr) {
+        this(context, attrs, defStyleAttr, GridStyle.obtain(context,attrs));
+    }
+
+    //在代码中创建，多个gridView可以共用同一个样式
+    public SimpleCustomGridView(Context context, GridStyle style) {
+        this(context, null, 0, style);
+    }
+
+    //属性已经由GridStyle统一解析，子类把样式传下来，不再重复解析
+    protected SimpleCustomGridView(Context context, AttributeSet attrs, int defStyleAttr, GridStyle style) {
         super(context, attrs, defStyleAttr);
-        init(context,attrs);
+        init(context,style);
     }
 
     //初始化
-    @SuppressLint("ResourceAsColor")
-    private void init(Context context, AttributeSet attrs){
+    private void init(Context context, GridStyle style){
         this.context = context;
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.wonderfulGridViewStyle);
 
-        column = typedArray.getInteger(R.styleable.wonderfulGridViewStyle_column,1);
-        gapVertical = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gapVertical,0);
-        gapHorizontal = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gapHorizontal,0);
+        column = style.column;
+        gapVertical = style.gapVertical;
+        gapHorizontal = style.gapHorizontal;
 
-        leftPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_leftPadding,0);
-        rightPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_rightPadding,0);
-        topPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_topPadding,0);
-        bottomPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_bottomPadding,0);
-        gridPadding = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gridPadding,-1);
+        leftPadding = style.leftPadding;
+        rightPadding = style.rightPadding;
+        topPadding = style.topPadding;
+        bottomPadding = style.bottomPadding;
+        gridPadding = style.gridPadding;
 
-        selectDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_selectDrawable,R.drawable.rect_blue_blank);
-        defaultDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_defaultDrawable,R.drawable.rect_gray_blank);
+        selectDrawable = style.selectDrawable;
+        defaultDrawable = style.defaultDrawable;
 
-        colorSelector = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_colorSelector,R.drawable.color_selector);
+        colorSelector = style.colorSelector;
 
-        textSize = typedArray.getDimensionPixelSize(R.styleable.wonderfulGridViewStyle_gridTextSize,-1);
+        textSize = style.textSize;
 
-        typedArray.recycle();
+        updateTextMetricsParams();
+    }
+
+    //用一个和子view字体设置相同的TextView获取预测量参数，只能在主线程调用
+    private void updateTextMetricsParams(){
+        TextView template = new TextView(context);
+        if (textSize != -1){
+            template.setTextSize(textSize);
+        }
+        textMetricsParams = TextViewCompat.getTextMetricsParams(template);
     }
 
 
@@ -115,12 +294,57 @@ public class SimpleCustomGridView extends ViewGroup {
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        if (jankMonitor == null){
+            measureGrid(widthMeasureSpec,heightMeasureSpec);
+            return;
+        }
+        long start = jankMonitor.beginPhase();
+        try {
+            measureGrid(widthMeasureSpec,heightMeasureSpec);
+        }finally {
+            jankMonitor.endPhase(GridJankMonitor.PHASE_MEASURE,start);
+        }
+    }
+
+    private void measureGrid(int widthMeasureSpec, int heightMeasureSpec){
+        measureCount++;
+        layoutFromRow = 0;
+        onPrepareBind();
+        applyPendingItemDiff();
+        //只追加了数据时只测量追加的子view
+        int appendFrom = this.appendFrom;
+        this.appendFrom = -1;
+        if (appendFrom >= 0 && measureAppended(widthMeasureSpec,heightMeasureSpec,appendFrom)){
+            //已有的子view不会重新绑定，状态可能在测量前已经被修改(例如读取选中状态时处理了队列)，逐个比较样式
+            restyleCells(appendFrom);
+            return;
+        }
+        //数据变化后重新过滤
+        if (filterQuery != null && filterVersion != dataVersion){
+            updateFilter();
+        }
 
         if (getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT){
             measureAT_MOST(widthMeasureSpec,heightMeasureSpec);
         }else {
             measureEXACTLY(widthMeasureSpec,heightMeasureSpec);
         }
+        lastWidthMeasureSpec = widthMeasureSpec;
+        lastHeightMeasureSpec = heightMeasureSpec;
+    }
+
+    //测量前、创建子view之前调用，子类可以在这里合并处理待处理的状态
+    protected void onPrepareBind(){
+    }
+
+    //重新设置前count个子view中样式和当前状态不一致的
+    private void restyleCells(int count){
+        for (int i=0; i<count; i++){
+            View cell = getChildAt(i);
+            if (!isCellStyleCurrent(cell,i) && shouldBindCellStyle(i)){
+                applyCellStyle(cell,i);
+            }
+        }
     }
 
     //宽为match_parent或指定大小情况下测量策略
@@ -130,206 +354,779 @@ public class SimpleCustomGridView extends ViewGroup {
         int height = View.MeasureSpec.getSize(heightMeasureSpec);
         setMeasuredDimension(width,height);
         //根据测量宽度计算每列的宽度
-        int columnWidth = (getMeasuredWidth() - getPaddingLeft() - getPaddingRight() - (column - 1) * gapVertical) / column;
+        int columnWidth = getLayoutEngine().getColumnWidth(getMeasuredWidth());
 
         //重新添加子view,并宽度设置为没一列的宽度，高度设置为WRAP_CONTENT
         //这样做是为了下面获取宽度为每列的宽度columnWidth，高度为WRAP_CONTENT约束下的测量高度
         addChildrenView(columnWidth, ViewGroup.LayoutParams.WRAP_CONTENT,-1);
-        //在以上约束下测量一次子view
-        measureChildren(widthMeasureSpec,heightMeasureSpec);
+        //在以上约束下测量一次子view，测量缓存命中的子view不需要测量
+        measureChildrenWithCache(widthMeasureSpec,heightMeasureSpec,columnWidth,-1,0);
 
         //获取最大子控件高度
-        int maxHeight = getMaxMeasureSize(1);
+        int maxHeight = getMaxMeasureSize(1,0);
         //以columnWidth和maxHeight为最终宽高，重新添加子view
         addChildrenView(columnWidth,maxHeight,-1);
         //再次测量
         measureChildren(widthMeasureSpec,heightMeasureSpec);
         //设置自己宽高
-        width = View.MeasureSpec.getSize(widthMeasureSpec);
-        height = maxHeight * getRows() + (getRows() - 1) * gapHorizontal + getPaddingTop() + getPaddingBottom();
-        setMeasuredDimension(width,height);
+        setGridMeasuredDimension(widthMeasureSpec,columnWidth,maxHeight);
     }
 
     //宽为wrap_content情况下测量策略
     private void measureAT_MOST(int widthMeasureSpec, int heightMeasureSpec){
         //计算最大宽度
-        int maxWith = (getWindowWidth() - getPaddingLeft() - getPaddingRight()) / column;
+        int maxWith = getLayoutEngine().getMaxColumnWidth(getWindowWidth());
         //以最大高度为1行测量
         addChildrenView(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT,1);
-        measureChildren(widthMeasureSpec,heightMeasureSpec);
+        //子view包裹内容时宽度只受父容器的约束
+        measureChildrenWithCache(widthMeasureSpec,heightMeasureSpec,widthMeasureSpec,1,0);
         //获取最大子view宽度
-        int maxMeasureWidth = getMaxMeasureSize(0);
+        int maxMeasureWidth = getMaxMeasureSize(0,0);
         int width = Math.min(maxWith,maxMeasureWidth);
         //获取最大子view高度
-        int height = getMaxMeasureSize(1);
+        int height = getMaxMeasureSize(1,0);
         //重新添加并测量
         addChildrenView(width,height,1);
         measureChildren(widthMeasureSpec,heightMeasureSpec);
         //设置自己宽高
-        //如果子view的数量小于列数，则宽按照子view的数量计算宽度
-        if (getChildCount() < column){
-            width = width * getChildCount() + (getChildCount() - 1) * gapVertical + getPaddingLeft() + getPaddingRight();
+        setGridMeasuredDimension(widthMeasureSpec,width,height);
+    }
+
+    /**
+     * 由子view的宽高计算并设置自己的宽高
+     * @param cellWidth 子view的宽
+     * @param cellHeight 子view的高
+     */
+    private void setGridMeasuredDimension(int widthMeasureSpec, int cellWidth, int cellHeight){
+        GridLayoutEngine engine = getLayoutEngine();
+        int height = engine.getHeight(getRowCount(),cellHeight,getExtraHeight());
+        if (getLayoutParams().width != ViewGroup.LayoutParams.WRAP_CONTENT){
+            setMeasuredDimension(View.MeasureSpec.getSize(widthMeasureSpec),height);
+            return;
         }
-        //否则按照列数计算宽度
-        else{
-            width = width * column + (column - 1) * gapVertical + getPaddingLeft() + getPaddingRight();
+        //可见子view的数量小于列数时按照可见子view的数量计算宽度，没有时宽为0
+        setMeasuredDimension(engine.getWrapWidth(getSlotCount(),cellWidth),height);
+    }
+
+    /**
+     * 只测量追加的子view，已有的子view不重新绑定、测量
+     * 追加的子view在第一次测量的约束下不超过已有子view的大小时，直接使用已有子view的大小，
+     * 否则所有子view的大小都要变化，返回false进行完整测量
+     * @param appendFrom 追加的起始位置
+     * @return 是否完成了测量
+     */
+    private boolean measureAppended(int widthMeasureSpec, int heightMeasureSpec, int appendFrom){
+        //宽度约束变化、过滤时不能只测量追加的部分
+        if (widthMeasureSpec != lastWidthMeasureSpec || filterQuery != null)return false;
+        if (appendFrom == 0 || appendFrom != getChildCount() || appendFrom > children.size())return false;
+        boolean wrap = getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT;
+        View first = getChildAt(0);
+        int cellWidth = first.getMeasuredWidth();
+        int cellHeight = first.getMeasuredHeight();
+        int maxLine = wrap ? 1 : -1;
+        int count = children.size();
+        for (int i=appendFrom; i<count; i++){
+            View cell = obtainCell();
+            cell.setVisibility(VISIBLE);
+            addViewInLayout(cell,-1,new ViewGroup.LayoutParams(wrap ? ViewGroup.LayoutParams.WRAP_CONTENT : cellWidth,
+                    ViewGroup.LayoutParams.WRAP_CONTENT),true);
+            bindCell(cell,i,maxLine);
+            if (!isCellStyleCurrent(cell,i) && shouldBindCellStyle(i)){
+                applyCellStyle(cell,i);
+            }
         }
-        height = height * getRows() + (getRows() - 1) * gapHorizontal + getPaddingTop() + getPaddingBottom();
-        setMeasuredDimension(width,height);
-        //如果在WRAP_CONTENT的情况下没有任何子元素则宽直接为0
-        if (getChildCount() == 0){
-            setMeasuredDimension(0,height);
+        //和完整测量第一次测量的约束相同，结果可以和已有子view比较
+        measureChildrenWithCache(widthMeasureSpec,heightMeasureSpec,wrap ? widthMeasureSpec : cellWidth,maxLine,appendFrom);
+        int width = wrap ? Math.min(getLayoutEngine().getMaxColumnWidth(getWindowWidth()),getMaxMeasureSize(0,appendFrom)) : cellWidth;
+        if (width > cellWidth || getMaxMeasureSize(1,appendFrom) > cellHeight)return false;
+        for (int i=appendFrom; i<count; i++){
+            View cell = getChildAt(i);
+            ViewGroup.LayoutParams params = cell.getLayoutParams();
+            params.width = cellWidth;
+            params.height = cellHeight;
+            measureChild(cell,widthMeasureSpec,heightMeasureSpec);
         }
+        setGridMeasuredDimension(widthMeasureSpec,cellWidth,cellHeight);
+        //从追加前的最后一行开始摆放，补齐不完整的最后一行
+        layoutFromRow = getRowOfPosition(appendFrom - 1);
+        return true;
     }
 
     @Override
     protected void onLayout(boolean b, int i0, int i1, int i2, int i3) {
-        //计算行数
-        int rows = getRows();
-        //一行一行地摆放
-        for (int i=0; i<rows; i++){
+        if (jankMonitor == null){
+            layoutGrid();
+            return;
+        }
+        long start = jankMonitor.beginPhase();
+        try {
+            layoutGrid();
+        }finally {
+            jankMonitor.endPhase(GridJankMonitor.PHASE_LAYOUT,start);
+        }
+    }
+
+    private void layoutGrid(){
+        layoutCount++;
+        int rows = getRowCount();
+        //一行一行地摆放，只追加了数据时之前的行不需要重新摆放
+        for (int i=layoutFromRow; i<rows; i++){
             if (getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT){
                 layoutRowAT_MOST(i);
             }else {
                 layoutRowEXACTLY(i);
             }
         }
+        //摆放完成后从旧位置开始动画
+        if (itemAnimator != null){
+            itemAnimator.runPendingAnimations();
+        }
+        //摆放完成后绑定可见行的样式，并按滑动方向安排接下来的行
+        if (styleBinder != null){
+            styleBinder.onGridLayout();
+        }
+        //几何关系可能发生了变化，虚拟节点需要重新获取
+        if (accessibilityHelper != null){
+            accessibilityHelper.invalidateRoot();
+        }
+        //重新摆放的行几何关系可能变化了，需要重新录制
+        markRowsDirty(layoutFromRow,rows - 1);
+        onStaticContentChanged();
+        layoutFromRow = 0;
+        //内容不足一屏时不会滑动，摆放后检查一次是否需要加载更多
+        if (loadMoreListener != null && !loadMoreRequested){
+            removeCallbacks(checkLoadMoreRunnable);
+            post(checkLoadMoreRunnable);
+        }
     }
 
-    //计算行数
-    private int getRows(){
-        int count = getChildCount();
-        Log.d(TAG, "ChildCount: " + count);
-        int rows;
-        if(count % column ==0){
-            rows = count / column;
-        }else {
-            rows = count / column + 1;
+    //同步当前的列数、间隔、padding，测量、摆放、坐标查找的几何计算都由它完成
+    GridLayoutEngine getLayoutEngine(){
+        layoutEngine.setColumn(column);
+        layoutEngine.setGap(gapVertical,gapHorizontal);
+        layoutEngine.setPadding(getPaddingLeft(),getPaddingTop(),getPaddingRight(),getPaddingBottom());
+        return layoutEngine;
+    }
+
+    //行数，用于滑动等频繁调用的场景，不打印日志
+    int getRowCount(){
+        return getLayoutEngine().getRowCount(getSlotCount());
+    }
+
+    //一行中第一个格子，子类可以重写以改变每行的起始位置，例如分组时每组从新的一行开始
+    //格子是可见子view的序号，没有过滤时和位置相同，由getPositionOfSlot转换成位置
+    int getRowStart(int row){
+        return getLayoutEngine().getRowStart(row);
+    }
+
+    //一行中最后一个格子的下一个
+    int getRowEnd(int row){
+        return getLayoutEngine().getRowEnd(row,getSlotCount());
+    }
+
+    //位置所在的行，被过滤掉的位置返回-1
+    int getRowOfPosition(int position){
+        int slot = getSlotOfPosition(position);
+        return slot < 0 ? -1 : getLayoutEngine().getRowOfSlot(slot);
+    }
+
+    //格子数量，即可见子view的数量
+    int getSlotCount(){
+        return visiblePositions == null ? getChildCount() : visibleCount;
+    }
+
+    //格子对应的位置
+    int getPositionOfSlot(int slot){
+        return visiblePositions == null ? slot : visiblePositions[slot];
+    }
+
+    //位置对应的格子，被过滤掉时返回-1
+    int getSlotOfPosition(int position){
+        if (visiblePositions == null)return position;
+        int slot = Arrays.binarySearch(visiblePositions,0,visibleCount,position);
+        return slot < 0 ? -1 : slot;
+    }
+
+    //第一个可见的子view，所有子view大小相同，用来计算行列宽高
+    private View getFirstVisibleCell(){
+        if (getSlotCount() == 0)return null;
+        return getChildAt(getPositionOfSlot(0));
+    }
+
+    //一行的顶部，相对于gridView
+    int getRowTop(int row){
+        View first = getFirstVisibleCell();
+        if (first == null)return getPaddingTop();
+        return getLayoutEngine().getRowTop(row,first.getMeasuredHeight());
+    }
+
+    //除了所有行之外额外需要的高度，例如分组的标题
+    int getExtraHeight(){
+        return 0;
+    }
+
+    //行高，包括行间隔
+    int getRowHeight(){
+        View first = getFirstVisibleCell();
+        if (first == null)return 0;
+        return first.getMeasuredHeight() + gapHorizontal;
+    }
+
+    //y坐标所在的行，超出范围时取最近的行，在行间隔上时取上面一行
+    int getRowAt(int y){
+        View first = getFirstVisibleCell();
+        if (first == null)return 0;
+        return getLayoutEngine().getRowAt(y,first.getMeasuredHeight(),getSlotCount());
+    }
+
+    /**
+     * 由行列几何关系计算子view的位置
+     * @param position 位置
+     * @param out 输出的区域，相对于gridView，被过滤掉时为空
+     */
+    void getCellBounds(int position, Rect out){
+        View first = getFirstVisibleCell();
+        int row = getRowOfPosition(position);
+        if (first == null || row < 0){
+            out.setEmpty();
+            return;
         }
-        Log.d(TAG, "Rows: " + rows);
-        return rows;
+        int col = getSlotOfPosition(position) - getRowStart(row);
+        int left = getLayoutEngine().getCellLeft(col,first.getMeasuredWidth());
+        int top = getRowTop(row);
+        out.set(left,top,left + first.getMeasuredWidth(),top + first.getMeasuredHeight());
+    }
+
+    /**
+     * 坐标所在的子view的位置
+     * @return 位置，在间隔或者padding上时返回-1
+     */
+    int getPositionAt(int x, int y){
+        View first = getFirstVisibleCell();
+        if (first == null || getRowHeight() <= 0)return -1;
+        //落在列间隔或者padding上
+        int col = getLayoutEngine().getColumnAt(x,first.getMeasuredWidth());
+        if (col < 0)return -1;
+        int row = getRowAt(y);
+        int dy = y - getRowTop(row);
+        //落在行间隔上
+        if (dy < 0 || dy >= first.getMeasuredHeight())return -1;
+        int slot = getRowStart(row) + col;
+        return slot < getRowEnd(row) ? getPositionOfSlot(slot) : -1;
+    }
+
+    //坐标最近的子view的位置，落在间隔或者超出范围时取最近的，没有子view时返回-1
+    int getNearestPositionAt(int x, int y){
+        View first = getFirstVisibleCell();
+        if (first == null)return -1;
+        int col = getLayoutEngine().getNearestColumnAt(x,first.getMeasuredWidth());
+        int row = getRowAt(y);
+        int end = getRowEnd(row);
+        if (end <= getRowStart(row))return -1;
+        return getPositionOfSlot(Math.min(getRowStart(row) + col,end - 1));
     }
 
     ///摆放一行,宽为match_parent或指定大小情况下摆放策略
     private void layoutRowEXACTLY(int rows){
-        int top = rows * getChildAt(0).getMeasuredHeight() + rows * gapHorizontal + getPaddingTop();
-        int left = getPaddingLeft();
+        GridLayoutEngine engine = getLayoutEngine();
+        int top = getRowTop(rows);
 
-        int startIndex = rows * column;
+        int startIndex = getRowStart(rows);
+        int endIndex = getRowEnd(rows);
         //此情况下子view的宽等于每一列的宽
-        int width = (getMeasuredWidth() - getPaddingLeft() - getPaddingRight() - (column - 1) * gapVertical) / column;
+        int width = engine.getColumnWidth(getMeasuredWidth());
 
         for (int i=0; i<column; i++){
             //获取子控件
             int childIndex = startIndex + i;
-            if (childIndex >= getChildCount())return;
-            View child = getChildAt(childIndex);
+            if (childIndex >= endIndex)return;
+            View child = getChildAt(getPositionOfSlot(childIndex));
             //摆放
-            int right = left + width;
-            int bottom = top + child.getMeasuredHeight();
-            child.layout(left,top,right,bottom);
-            //left 偏移
-            left += width + gapVertical;
-
+            int left = engine.getCellLeft(i,width);
+            child.layout(left,top,left + width,top + child.getMeasuredHeight());
         }
     }
 
     //摆放一行,宽为wrap_content情况下摆放策略
     private void layoutRowAT_MOST(int rows){
-        int top = rows * getChildAt(0).getMeasuredHeight() + rows * gapHorizontal + getPaddingTop();
-        int left = getPaddingLeft();
+        GridLayoutEngine engine = getLayoutEngine();
+        int top = getRowTop(rows);
 
-        int startIndex = rows * column;
+        int startIndex = getRowStart(rows);
+        int endIndex = getRowEnd(rows);
         //此情况下子view的宽就等于自己的宽，这在测量过程中已经处理了
-        int width = getChildAt(0).getMeasuredWidth();
+        int width = getFirstVisibleCell().getMeasuredWidth();
 
         for (int i=0; i<column; i++){
             //获取子控件
             int childIndex = startIndex + i;
-            if (childIndex >= getChildCount())return;
-            View child = getChildAt(childIndex);
+            if (childIndex >= endIndex)return;
+            View child = getChildAt(getPositionOfSlot(childIndex));
             //摆放
-            int right = left + width;
-            int bottom = top + child.getMeasuredHeight();
-            child.layout(left,top,right,bottom);
-            //left 偏移
-            left += width + gapVertical;
+            int left = engine.getCellLeft(i,width);
+            child.layout(left,top,left + width,top + child.getMeasuredHeight());
         }
     }
 
     /**
-     * 获取子元素的最大测量宽高
-     * @param type 0：宽 ~0：高
-     * @return
+     * 测量子view并记录测量结果，有测量缓存时先查缓存，命中的子view不需要测量
+     * @param constraintWidth 子view的宽度约束，包裹内容时为父容器的宽度约束
+     * @param maxLine 最大行数
+     * @param from 从这个位置开始测量
      */
-    private int getMaxMeasureSize(int type){
+    private void measureChildrenWithCache(int widthMeasureSpec, int heightMeasureSpec, int constraintWidth, int maxLine, int from){
         int count = getChildCount();
-        int maxSize = 0;
-        for (int i=0; i<count; i++){
-            int measureSize;
-            if (type == 0){
-                measureSize = getChildAt(i).getMeasuredWidth();
-            }else {
-                measureSize = getChildAt(i).getMeasuredHeight();
-            }
-            maxSize = maxSize < measureSize ? measureSize : maxSize;
+        if (cellWidths.length < count){
+            cellWidths = new int[count];
+            cellHeights = new int[count];
+        }
+        TextMeasureCache cache = getTextMeasureCache();
+        //字体缩放变化后缓存的测量结果失效
+        cache.checkFontScale(getResources().getConfiguration().fontScale);
+        long styleHash = getMeasureStyleHash(constraintWidth,maxLine);
+        for (int i=from; i<count; i++){
+            measureChildWithCache(cache,styleHash,i,widthMeasureSpec,heightMeasureSpec);
+        }
+    }
+
+    //测量一个子view，结果记录在cellWidths、cellHeights中
+    private void measureChildWithCache(TextMeasureCache cache, long styleHash, int i, int widthMeasureSpec, int heightMeasureSpec){
+        View child = getChildAt(i);
+        if (child.getVisibility() == GONE){
+            cellWidths[i] = 0;
+            cellHeights[i] = 0;
+            return;
+        }
+        long key = hashMeasureContent(styleHash,i);
+        int size = cache.get(key);
+        if (size == TextMeasureCache.NONE){
+            measureChild(child,widthMeasureSpec,heightMeasureSpec);
+            cellWidths[i] = child.getMeasuredWidth();
+            cellHeights[i] = child.getMeasuredHeight();
+            cache.put(key,cellWidths[i],cellHeights[i]);
+        }else {
+            cellWidths[i] = TextMeasureCache.width(size);
+            cellHeights[i] = TextMeasureCache.height(size);
+        }
+    }
+
+    //测量缓存key中和内容无关的部分，测量结果只和这些因素有关
+    private long getMeasureStyleHash(int constraintWidth, int maxLine){
+        long hash = TextMeasureCache.newHash();
+        hash = TextMeasureCache.hash(hash,getCellType());
+        hash = TextMeasureCache.hash(hash,textSize);
+        hash = TextMeasureCache.hash(hash,Float.floatToIntBits(getResources().getConfiguration().fontScale));
+        hash = TextMeasureCache.hash(hash,gridPadding);
+        hash = TextMeasureCache.hash(hash,leftPadding);
+        hash = TextMeasureCache.hash(hash,topPadding);
+        hash = TextMeasureCache.hash(hash,rightPadding);
+        hash = TextMeasureCache.hash(hash,bottomPadding);
+        hash = TextMeasureCache.hash(hash,constraintWidth);
+        return TextMeasureCache.hash(hash,maxLine);
+    }
+
+    //测量缓存的key加上内容，子view除了children还显示其他内容时重写
+    protected long hashMeasureContent(long hash, int position){
+        return TextMeasureCache.hash(hash,getItemLabel(position));
+    }
+
+    //当前使用的测量缓存，设置了子view池时使用池中共用的
+    public TextMeasureCache getTextMeasureCache(){
+        if (viewPool != null){
+            return viewPool.getMeasureCache();
         }
-        return maxSize;
+        if (measureCache == null){
+            measureCache = new TextMeasureCache(DEFAULT_MEASURE_CACHE_SIZE);
+        }
+        return measureCache;
+    }
+
+    /**
+     * 获取子元素的最大测量宽高，使用第一次测量的结果
+     * @param type 0：宽 ~0：高
+     * @param from 从这个位置开始
+     * @return
+     */
+    private int getMaxMeasureSize(int type, int from){
+        return GridLayoutEngine.max(type == 0 ? cellWidths : cellHeights,from,getChildCount());
     }
 
     /**
-     * 添加子view
+     * 添加子view，已有的子view直接复用，只重新绑定发生变化的部分
+     * 数量不够时创建新的子view，多余的移除
      * @param width 子view的宽
      * @param height 子view的高
+     * @param maxLine 最大行数，小于等于0表示不限制
      */
     protected void addChildrenView(int width,int height,int maxLine){
-        removeAllViews();
-        for (int i=0; i<children.size(); i++){
-            final String child = children.get(i);
+        if (jankMonitor == null){
+            bindChildren(width,height,maxLine);
+            return;
+        }
+        long start = jankMonitor.beginPhase();
+        try {
+            bindChildren(width,height,maxLine);
+        }finally {
+            jankMonitor.endPhase(GridJankMonitor.PHASE_BIND,start);
+        }
+    }
 
-            TextView textView = new TextView(context);
-            if (maxLine >0){
-                textView.setMaxLines(maxLine);
+    private void bindChildren(int width,int height,int maxLine){
+        int count = children.size();
+        if (getChildCount() > count){
+            int surplus = getChildCount() - count;
+            View[] removed = new View[surplus];
+            for (int i=0; i<surplus; i++){
+                removed[i] = getChildAt(count + i);
+            }
+            removeViewsInLayout(count,surplus);
+            recycleCells(removed);
+        }
+        for (int i=0; i<count; i++){
+            View cell;
+            if (i < getChildCount()){
+                cell = getChildAt(i);
+            }else {
+                cell = obtainCell();
+                cell.setVisibility(isItemVisible(i) ? VISIBLE : GONE);
+                addViewInLayout(cell,-1,new ViewGroup.LayoutParams(width,height),true);
             }
-            textView.setLayoutParams(new ViewGroup.LayoutParams(width, height));
-
-            //设置背景选择器
-            StateListDrawable drawable = new StateListDrawable();
-            Drawable drawableSelect = ContextCompat.getDrawable(context,selectDrawable);
-            Drawable drawableNormal = ContextCompat.getDrawable(context,defaultDrawable);
-            //选中
-            drawable.addState(new int[]{android.R.attr.state_pressed},drawableSelect);
-            //未选中
-            drawable.addState(new int[]{},drawableNormal);
-            textView.setBackground(drawable);
-            //设置字体颜色选择器
-            textView.setTextColor(ContextCompat.getColorStateList(context, colorSelector));
-
-            //设置padding
-            if (gridPadding != -1){
-                textView.setPadding(gridPadding,gridPadding,gridPadding,gridPadding);
+            ViewGroup.LayoutParams params = cell.getLayoutParams();
+            params.width = width;
+            params.height = height;
+            bindCell(cell,i,maxLine);
+            applyCellVisibility(cell,i);
+            //设置背景、字体颜色、padding，开启延迟绑定样式时不可见的行延迟到空闲时间再绑定
+            if (!isCellStyleCurrent(cell,i) && shouldBindCellStyle(i)){
+                applyCellStyle(cell,i);
+            }
+        }
+    }
+
+    //获取一个新的子view，优先使用池中回收的
+    private View obtainCell(){
+        View cell = viewPool == null ? null : viewPool.acquireCell(getCellType());
+        if (cell == null){
+            cell = createCell();
+        }
+        //所有子view共用同一个点击监听，通过子view的位置区分
+        cell.setOnClickListener(cellClickListener);
+        cell.setOnLongClickListener(cellLongClickListener);
+        return cell;
+    }
+
+    /**
+     * 把差异应用到子view上，保留的子view按新的位置重新排列，跟着item一起移动，
+     * 删除的子view交给动画淡出，新插入的位置创建新的子view，之后的绑定只处理真正变化的部分
+     * 只调整子view的顺序，不会触发子view的attach/detach
+     */
+    private void applyPendingItemDiff(){
+        GridDiff diff = pendingItemDiff;
+        pendingItemDiff = null;
+        if (diff == null || itemAnimator == null)return;
+        int oldCount = getChildCount();
+        if (oldCount != diff.getOldSize())return;
+        int newCount = diff.getNewSize();
+        View[] oldCells = new View[oldCount];
+        for (int i=0; i<oldCount; i++){
+            oldCells[i] = getChildAt(i);
+        }
+        ViewGroup.LayoutParams template = oldCount > 0 ? oldCells[0].getLayoutParams() : null;
+        itemAnimator.begin(newCount);
+        detachAllViewsFromParent();
+        for (int i=0; i<newCount; i++){
+            int oldPosition = diff.getOldPosition(i);
+            if (oldPosition >= 0){
+                View cell = oldCells[oldPosition];
+                oldCells[oldPosition] = null;
+                itemAnimator.recordMove(cell,i);
+                attachViewToParent(cell,i,cell.getLayoutParams());
             }else {
-                textView.setPadding(leftPadding,topPadding,rightPadding,bottomPadding);
+                View cell = obtainCell();
+                cell.setVisibility(isItemVisible(i) ? VISIBLE : GONE);
+                //大小在接下来的测量中重新设置
+                ViewGroup.LayoutParams params = template == null
+                        ? new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,ViewGroup.LayoutParams.WRAP_CONTENT)
+                        : new ViewGroup.LayoutParams(template);
+                addViewInLayout(cell,i,params,true);
+                itemAnimator.recordAdd(cell,i);
             }
-            //居中显示
-            textView.setGravity(Gravity.CENTER);
-            //设置字体大小
-            if (textSize != -1){
-                textView.setTextSize(textSize);
+        }
+        //没有对应新位置的子view被删除了
+        for (View cell : oldCells){
+            if (cell == null)continue;
+            removeDetachedView(cell,false);
+            itemAnimator.recordRemove(cell);
+        }
+    }
+
+    //删除动画结束，子view可以回收了
+    void onRemoveAnimationEnd(View cell){
+        onCellRecycled(cell);
+        if (viewPool != null){
+            viewPool.releaseCell(getCellType(),cell);
+        }
+    }
+
+    //移除的子view放回池中
+    private void recycleCells(View[] cells){
+        for (View cell : cells){
+            onCellRecycled(cell);
+            if (viewPool != null){
+                viewPool.releaseCell(getCellType(),cell);
             }
-            //设置字体内容
-            textView.setText(child);
-            //设置点击监听事件
-            final int finalI = i;
-            textView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    onItemClick(finalI,child);
+        }
+    }
+
+    //子view被移除或者放回池中，子类在这里释放子view持有的资源，例如取消图片加载
+    protected void onCellRecycled(View cell){
+    }
+
+    //子view的类型，createCell创建的子view结构不同时返回不同的类型，只有类型相同的子view才会共用
+    protected int getCellType(){
+        return 0;
+    }
+
+    //创建子view，只设置和位置无关的属性
+    protected View createCell(){
+        TextView textView = new TextView(context);
+        //居中显示
+        textView.setGravity(Gravity.CENTER);
+        return textView;
+    }
+
+    /**
+     * 绑定子view的内容，复用的子view只有发生变化时才会真正修改
+     * @param cell 子view
+     * @param position 位置
+     * @param maxLine 最大行数
+     */
+    protected void bindCell(View cell, int position, int maxLine){
+        TextView textView = (TextView) cell;
+        textView.setMaxLines(maxLine > 0 ? maxLine : Integer.MAX_VALUE);
+        //设置字体大小
+        if (textSize != -1){
+            textView.setTextSize(textSize);
+        }
+        bindCellPadding(textView);
+        //设置字体内容
+        bindCellText(textView,position);
+    }
+
+    /**
+     * 绑定子view的样式：背景、字体颜色、padding
+     * 这部分不影响测量结果，开启延迟绑定样式时会延迟到空闲时间绑定
+     * @param cell 子view
+     * @param position 位置
+     */
+    protected void bindCellStyle(View cell, int position){
+        TextView textView = (TextView) cell;
+        //设置背景选择器
+        StateListDrawable drawable = new StateListDrawable();
+        Drawable drawableSelect = ContextCompat.getDrawable(context,selectDrawable);
+        Drawable drawableNormal = ContextCompat.getDrawable(context,defaultDrawable);
+        //选中
+        drawable.addState(new int[]{android.R.attr.state_pressed},drawableSelect);
+        //未选中
+        drawable.addState(new int[]{},drawableNormal);
+        textView.setBackground(drawable);
+        //设置字体颜色选择器
+        textView.setTextColor(ContextCompat.getColorStateList(context, colorSelector));
+        //背景可能带有padding，重新设置一次
+        bindCellPadding(textView);
+    }
+
+    //设置子view的文字，有预测量结果时直接使用，不需要在主线程重新测量文字
+    protected void bindCellText(TextView textView, int position){
+        //复用的子view内容没有变化时不需要重新设置
+        CharSequence label = getItemLabel(position);
+        if (TextUtils.equals(textView.getText(),label))return;
+        CharSequence[] texts = precomputedTexts;
+        if (texts != null && position < texts.length && texts[position] instanceof PrecomputedTextCompat){
+            try {
+                TextViewCompat.setPrecomputedText(textView,(PrecomputedTextCompat) texts[position]);
+                return;
+            }catch (IllegalArgumentException e){
+                //子view的字体设置和预测量参数不一致，不再预测量
+                Log.w(TAG, "PrecomputedText params mismatch, disable precompute", e);
+                textMetricsParams = null;
+                precomputedTexts = null;
+            }
+        }
+        textView.setText(label);
+    }
+
+    //设置子view的padding
+    protected void bindCellPadding(View cell){
+        if (gridPadding != -1){
+            cell.setPadding(gridPadding,gridPadding,gridPadding,gridPadding);
+        }else {
+            cell.setPadding(leftPadding,topPadding,rightPadding,bottomPadding);
+        }
+    }
+
+    //绑定样式并记录绑定时的样式状态
+    protected final void applyCellStyle(View cell, int position){
+        bindCellStyle(cell,position);
+        bindEnabledState(cell,isItemEnabled(position));
+        cell.setTag(R.id.grid_cell_style_bound,getCellStyleKey(position));
+    }
+
+    /**
+     * 被禁用的子view半透明显示，所有类型的子view都适用，不影响选中样式
+     * 只恢复自己设置的透明度，不打断增删动画中的淡入淡出
+     */
+    protected void bindEnabledState(View cell, boolean enabled){
+        if (!enabled){
+            cell.setAlpha(DISABLED_ALPHA);
+        }else if (cell.getAlpha() == DISABLED_ALPHA){
+            cell.setAlpha(1f);
+        }
+    }
+
+    /**
+     * 子view的样式状态，状态相同的子view复用时不需要重新绑定样式
+     * 子类的样式和位置有关时(例如选中状态)重写
+     */
+    protected Object getCellStyleKey(int position){
+        return Boolean.TRUE;
+    }
+
+    //子view已经绑定的样式是否和当前状态一致
+    protected boolean isCellStyleCurrent(View cell, int position){
+        Object key = cell.getTag(R.id.grid_cell_style_bound);
+        return key != null && key.equals(getCellStyleKey(position));
+    }
+
+    //样式发生变化，所有子view都需要重新绑定样式
+    protected void invalidateCellStyles(){
+        for (int i=0; i<getChildCount(); i++){
+            getChildAt(i).setTag(R.id.grid_cell_style_bound,null);
+        }
+    }
+
+    //创建子view时是否立即绑定样式，没有开启延迟绑定样式或者在可见区域内的行立即绑定
+    protected boolean shouldBindCellStyle(int position){
+        return styleBinder == null || styleBinder.isRowVisible(getRowOfPosition(position));
+    }
+
+    /**
+     * 绑定一行中还没有绑定样式的子view，并以当前的大小重新测量、摆放
+     * 绑定过程中屏蔽子view的requestLayout，因为样式不影响gridView的测量结果
+     * @param row 行
+     * @return 是否有子view被绑定
+     */
+    boolean bindRow(int row){
+        if (jankMonitor == null){
+            return bindRowCells(row);
+        }
+        long start = jankMonitor.beginPhase();
+        try {
+            return bindRowCells(row);
+        }finally {
+            jankMonitor.endPhase(GridJankMonitor.PHASE_BIND,start);
+        }
+    }
+
+    private boolean bindRowCells(int row){
+        int start = getRowStart(row);
+        int end = getRowEnd(row);
+        boolean bound = false;
+        interceptRequestLayout++;
+        try {
+            for (int slot=start; slot<end; slot++){
+                int i = getPositionOfSlot(slot);
+                View child = getChildAt(i);
+                if (isCellStyleCurrent(child,i))continue;
+                applyCellStyle(child,i);
+                //已经摆放过的子view以当前大小重新测量、摆放
+                if (child.getWidth() > 0){
+                    child.measure(MeasureSpec.makeMeasureSpec(child.getWidth(),MeasureSpec.EXACTLY),
+                            MeasureSpec.makeMeasureSpec(child.getHeight(),MeasureSpec.EXACTLY));
+                    child.layout(child.getLeft(),child.getTop(),child.getRight(),child.getBottom());
                 }
-            });
+                bound = true;
+            }
+        }finally {
+            interceptRequestLayout--;
+        }
+        return bound;
+    }
 
-            addView(textView);
+    /**
+     * 只重新绑定一个子view的内容，选中状态和样式不变，绑定过程中屏蔽子view的requestLayout
+     * 以完整测量第一次测量的约束测量这个子view，不影响所有子view的统一大小时以当前大小重新测量、摆放，
+     * 否则请求完整刷新
+     * @param position 位置
+     * @return 是否在原位完成了刷新，false时已经请求了完整刷新
+     */
+    protected boolean rebindCell(int position){
+        View child = position < getChildCount() ? getChildAt(position) : null;
+        //还没有摆放，或者已经在等待完整刷新
+        if (child == null || child.getWidth() == 0 || isLayoutRequested() || position >= cellWidths.length){
+            requestRefresh();
+            return false;
+        }
+        //内容变化可能影响过滤结果
+        if (filterQuery != null){
+            filterIndex = null;
+            updateFilter();
+            requestRefresh();
+            return false;
+        }
+        filterIndex = null;
+        boolean wrap = getLayoutParams().width == ViewGroup.LayoutParams.WRAP_CONTENT;
+        int cellWidth = child.getWidth();
+        int cellHeight = child.getHeight();
+        int oldWidth = cellWidths[position];
+        int oldHeight = cellHeights[position];
+        ViewGroup.LayoutParams params = child.getLayoutParams();
+        boolean resized;
+        interceptRequestLayout++;
+        try {
+            bindCell(child,position,wrap ? 1 : -1);
+            //和完整测量第一次测量的约束相同，结果可以和其他子view比较
+            params.width = wrap ? ViewGroup.LayoutParams.WRAP_CONTENT : cellWidth;
+            params.height = ViewGroup.LayoutParams.WRAP_CONTENT;
+            measureChildWithCache(getTextMeasureCache(),getMeasureStyleHash(wrap ? lastWidthMeasureSpec : cellWidth,wrap ? 1 : -1),
+                    position,lastWidthMeasureSpec,lastHeightMeasureSpec);
+            int maxWidth = getLayoutEngine().getMaxColumnWidth(getWindowWidth());
+            resized = isUnifiedSizeChanged(oldHeight,cellHeights[position],cellHeight);
+            if (wrap && !resized){
+                resized = isUnifiedSizeChanged(Math.min(maxWidth,oldWidth),Math.min(maxWidth,cellWidths[position]),cellWidth);
+            }
+            params.width = cellWidth;
+            params.height = cellHeight;
+            if (!resized){
+                child.measure(MeasureSpec.makeMeasureSpec(cellWidth,MeasureSpec.EXACTLY),
+                        MeasureSpec.makeMeasureSpec(cellHeight,MeasureSpec.EXACTLY));
+                child.layout(child.getLeft(),child.getTop(),child.getRight(),child.getBottom());
+            }
+        }finally {
+            interceptRequestLayout--;
         }
+        if (resized){
+            requestRefresh();
+        }
+        return !resized;
+    }
+
+    //变大超过了统一大小，或者原来决定统一大小的子view变小了，统一大小都可能变化
+    private static boolean isUnifiedSizeChanged(int oldSize, int newSize, int unifiedSize){
+        return newSize > unifiedSize || (newSize < unifiedSize && oldSize >= unifiedSize);
+    }
+
+    @Override
+    public void requestLayout() {
+        //绑定样式时不需要重新测量整个gridView
+        if (interceptRequestLayout > 0)return;
+        super.requestLayout();
+    }
+
+    //以编程方式点击某一项，效果和点击子view一样
+    public void performItemClick(int position){
+        if (position < 0 || position >= children.size())return;
+        onItemClick(position,children.get(position));
     }
 
     //处理点击事件
@@ -339,40 +1136,954 @@ public class SimpleCustomGridView extends ViewGroup {
         }
     }
 
+    //处理长按事件，返回是否消费了长按
+    protected boolean onItemLongClick(int position, String content){
+        return itemLongClickListener != null && itemLongClickListener.onItemLongClick(position,content);
+    }
+
     //添加子view
     public void addChildrenView(List<String> children){
         if (children == null)return;
         this.children.addAll(children);
+        onDataChanged();
+    }
+
+    /**
+     * 追加数据到末尾，用于分页加载
+     * 已有的子view不重新绑定、测量、摆放，只测量追加的子view，从最后一行开始摆放并增加高度
+     * @param items 追加的数据
+     */
+    public void appendItems(List<String> items){
+        if (items == null || items.isEmpty())return;
+        int pending = appendFrom;
+        int from = children.size();
+        children.addAll(items);
+        //已有的位置不变，不需要作为整体变化处理
+        submittedList = null;
+        dataVersion++;
+        loadMoreRequested = false;
+        requestRefresh();
+        //测量前还有其他刷新请求时只能完整测量，连续追加时从第一次追加的位置开始
+        appendFrom = pending == -2 ? -2 : (pending >= 0 ? pending : from);
+    }
+
+    /**
+     * 设置加载更多的监听，滑动到距离最后一行不超过thresholdRows行时通知一次，追加数据后才会再次通知
+     * @param thresholdRows 距离最后一行的行数
+     * @param listener 为null时不再通知
+     */
+    public void setLoadMoreListener(int thresholdRows, LoadMoreListener listener){
+        if (thresholdRows < 0){
+            throw new IllegalArgumentException("thresholdRows不能小于0！！！");
+        }
+        loadMoreThreshold = thresholdRows;
+        loadMoreListener = listener;
+        loadMoreRequested = false;
+    }
+
+    //加载失败或者没有追加数据时调用，之后可以再次通知加载更多
+    public void resetLoadMore(){
+        loadMoreRequested = false;
+        checkLoadMore();
+    }
+
+    //可见区域的最后一行接近最后一行时通知加载更多
+    private void checkLoadMore(){
+        if (loadMoreListener == null || loadMoreRequested || getRowCount() == 0)return;
+        if (!getLocalVisibleRect(visibleRect))return;
+        int lastVisibleRow = getRowAt(visibleRect.bottom - 1);
+        if (lastVisibleRow < getRowCount() - 1 - loadMoreThreshold)return;
+        loadMoreRequested = true;
+        loadMoreListener.onLoadMore(getItemCount());
     }
 
     //刷新数据
     public void refresh(){
-        requestLayout();
+        requestRefresh();
     }
 
     //刷新数据
     public void refresh(List<String> children){
         if (children == null)return;
+        prepareItemAnimation(children);
         this.children.clear();
         this.children.addAll(children);
-        requestLayout();
+        onDataChanged();
+        requestRefresh();
     }
 
-    //获得屏幕宽
-    private int getWindowWidth(){
-        //获取windowManager
-        WindowManager windowManager = (WindowManager) context.getSystemService(WINDOW_SERVICE);
-        //获取屏幕对象
-        Display defaultDisplay = windowManager.getDefaultDisplay();
-        //获取屏幕的宽、高，单位是像素
-        return defaultDisplay.getWidth();
+    /**
+     * 数据整体替换之前调用，开启动画时计算新旧数据的差异，下一次测量时应用到子view上
+     * @param newChildren 新数据
+     */
+    protected void prepareItemAnimation(List<String> newChildren){
+        if (itemAnimator == null || getChildCount() == 0)return;
+        pendingItemDiff = GridDiff.compute(children,newChildren);
+        if (pendingItemDiff.isUnchanged()){
+            pendingItemDiff = null;
+        }
     }
 
-    public void setItemClickListener(ItemClickListener itemClickListener) {
-        this.itemClickListener = itemClickListener;
+    //数据在主线程被直接修改，之前提交的差异基准和预测量结果都失效了
+    protected void onDataChanged(){
+        submittedList = null;
+        precomputedTexts = null;
+        dataVersion++;
     }
 
-    public interface ItemClickListener{
-        public void onItemClick(int position, String content);
+    /**
+     * 提交新数据，可以在任意线程调用
+     * 差异计算和文字预测量在后台线程执行，完成后在主线程一次性发布
+     * 更新比处理快时，中间的提交会被丢弃，只发布最新的一次
+     * @param list 新数据，提交后调用方不能再修改它
+     */
+    public void submitList(List<String> list){
+        submit(list,null);
+    }
+
+    //提交数据和附加数据(例如tab标签)，附加数据会原样交给onListSubmitted
+    protected final void submit(final List<String> list, final List<String> extra){
+        final int generation = submitGeneration.incrementAndGet();
+        //差异基准必须在主线程读取，其他线程提交时先切换到主线程
+        if (Looper.myLooper() == Looper.getMainLooper()){
+            computeInBackground(generation,list,extra);
+        }else {
+            GridExecutors.main().post(new Runnable() {
+                @Override
+                public void run() {
+                    if (generation != submitGeneration.get())return;
+                    computeInBackground(generation,list,extra);
+                }
+            });
+        }
+    }
+
+    //主线程取得差异基准和版本号，在后台线程计算差异和预测量文字
+    private void computeInBackground(final int generation, final List<String> list, final List<String> extra){
+        //数据在主线程被直接修改过(或者第一次提交)时没有基准，以当前数据的快照作为基准
+        if (submittedList == null){
+            submittedList = new ArrayList<>(children);
+        }
+        final List<String> base = submittedList;
+        final int baseVersion = dataVersion;
+        GridExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                //已经有更新的提交，不用处理了
+                if (generation != submitGeneration.get())return;
+                final List<String> newList = list == null ? new ArrayList<String>() : list;
+                final PrecomputedTextCompat.Params params = textMetricsParams;
+                final GridDiff diff = GridDiff.compute(base,newList);
+                final CharSequence[] texts = precompute(newList,diff,params);
+                if (generation != submitGeneration.get())return;
+                GridExecutors.main().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != submitGeneration.get())return;
+                        //主线程在这期间直接修改过数据，差异已经失效
+                        GridDiff validDiff = baseVersion == dataVersion ? diff : null;
+                        //字体在这期间发生了变化，预测量的结果不能使用
+                        publish(newList,extra,validDiff,params == textMetricsParams ? texts : null);
+                    }
+                });
+            }
+        });
+    }
+
+    //后台预测量文字，没有变化的item直接复用上一次的结果
+    private CharSequence[] precompute(List<String> list, GridDiff diff, PrecomputedTextCompat.Params params){
+        if (params == null)return null;
+        CharSequence[] old = precomputedTexts;
+        CharSequence[] texts = new CharSequence[list.size()];
+        for (int i=0; i<texts.length; i++){
+            int oldPosition = diff.getOldPosition(i);
+            if (old != null && oldPosition >= 0 && oldPosition < old.length && old[oldPosition] != null){
+                texts[i] = old[oldPosition];
+            }else if (list.get(i) != null){
+                texts[i] = PrecomputedTextCompat.create(list.get(i),params);
+            }
+        }
+        return texts;
+    }
+
+    //主线程发布后台处理的结果
+    private void publish(List<String> list, List<String> extra, GridDiff diff, CharSequence[] texts){
+        boolean unchanged = diff != null && diff.isUnchanged();
+        if (diff != null && !unchanged && itemAnimator != null && getChildCount() > 0){
+            pendingItemDiff = diff;
+        }
+        onListSubmitted(list,extra,diff);
+        submittedList = list;
+        precomputedTexts = texts;
+        dataVersion++;
+        if (!unchanged){
+            requestRefresh();
+        }
+    }
+
+    /**
+     * 主线程发布新数据
+     * @param list 新数据
+     * @param extra 附加数据
+     * @param diff 和当前数据的差异，为null表示差异无效，只能整体替换
+     */
+    protected void onListSubmitted(List<String> list, List<String> extra, GridDiff diff){
+        children.clear();
+        children.addAll(list);
+    }
+
+    /**
+     * 开始批量更新，必须和{@link #commit()}成对调用，可以嵌套
+     * 期间数据、选中、样式的修改只记录下来，最外层commit时只进行一次测量、摆放、绘制
+     */
+    public void beginBatch(){
+        batchDepth++;
+    }
+
+    //提交批量更新
+    public void commit(){
+        if (batchDepth == 0){
+            throw new IllegalStateException("commit()之前必须先调用beginBatch()！！！");
+        }
+        if (--batchDepth > 0)return;
+        boolean refresh = batchRefreshRequested;
+        batchRefreshRequested = false;
+        if (refresh){
+            requestRefresh();
+        }
+        onBatchCommitted(refresh);
+    }
+
+    //在一个批量更新中执行block
+    public void update(Runnable block){
+        beginBatch();
+        try {
+            block.run();
+        }finally {
+            commit();
+        }
+    }
+
+    //是否正在批量更新
+    public boolean isInBatch(){
+        return batchDepth > 0;
+    }
+
+    /**
+     * 批量更新提交后调用
+     * @param refreshed 是否已经请求了重新测量，没有的话子类需要自己处理记录下来的修改
+     */
+    protected void onBatchCommitted(boolean refreshed){
+    }
+
+    //数据或样式发生变化，请求重新测量，批量更新期间只记录
+    protected void requestRefresh(){
+        appendFrom = -2;
+        if (batchDepth > 0){
+            batchRefreshRequested = true;
+            return;
+        }
+        refreshCount++;
+        requestLayout();
+    }
+
+    //实际发出的刷新请求次数
+    public int getRefreshCount() {
+        return refreshCount;
+    }
+
+    //测量次数
+    public int getMeasureCount() {
+        return measureCount;
+    }
+
+    //摆放次数
+    public int getLayoutCount() {
+        return layoutCount;
+    }
+
+    //内存不足时释放的子view数量，不包括共用的子view池中释放的
+    public int getReleasedViews() {
+        return releasedViews;
+    }
+
+    //释放的缓存字节数(估算)，不包括共用的子view池中释放的
+    public long getReleasedBytes() {
+        return releasedBytes;
+    }
+
+    //设置列数
+    public void setColumn(int column){
+        if (column < 1 || this.column == column)return;
+        this.column = column;
+        requestRefresh();
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    //设置每列、每行中间的间隔
+    public void setGap(int gapVertical, int gapHorizontal){
+        if (this.gapVertical == gapVertical && this.gapHorizontal == gapHorizontal)return;
+        this.gapVertical = gapVertical;
+        this.gapHorizontal = gapHorizontal;
+        requestRefresh();
+    }
+
+    //设置子view的padding，-1表示使用上下左右分别设置的padding
+    public void setGridPadding(int gridPadding){
+        if (this.gridPadding == gridPadding)return;
+        this.gridPadding = gridPadding;
+        requestRefresh();
+    }
+
+    //设置字体大小，-1表示默认大小
+    public void setGridTextSize(int textSize){
+        if (this.textSize == textSize)return;
+        this.textSize = textSize;
+        //字体变化后预测量的结果失效
+        precomputedTexts = null;
+        updateTextMetricsParams();
+        //自己的测量缓存只有这一个gridView使用，旧字体大小的结果不会再用到
+        if (measureCache != null){
+            measureCache.clear();
+        }
+        requestRefresh();
+    }
+
+    /**
+     * 过滤，只显示内容包含查询的项，其余的项隐藏但不销毁，选中状态保留
+     * 忽略大小写和变音符号，中文也可以用拼音首字母查询，例如"fczlm"可以查到"复仇者联盟"
+     * 输入时逐字调用即可，查询变长时只在上一次的结果中继续筛选
+     * @param query 查询，为null或者空时显示全部
+     */
+    public void setFilter(CharSequence query){
+        String normalized = TextUtils.isEmpty(query) ? null : GridFilterIndex.normalize(query);
+        if (TextUtils.isEmpty(normalized)){
+            normalized = null;
+        }
+        if (TextUtils.equals(filterQuery,normalized))return;
+        filterQuery = normalized;
+        updateFilter();
+        requestRefresh();
+    }
+
+    //按当前的查询重新计算可见的位置，并更新子view的可见性
+    private void updateFilter(){
+        if (filterQuery == null){
+            visiblePositions = null;
+            visibleCount = 0;
+        }else {
+            //数据变化后重新建立索引
+            if (filterIndex == null || filterVersion != dataVersion){
+                int count = children.size();
+                List<String> labels = new ArrayList<>(count);
+                for (int i=0; i<count; i++){
+                    labels.add(getFilterLabel(i));
+                }
+                filterIndex = new GridFilterIndex(labels);
+                filterVersion = dataVersion;
+            }
+            if (visiblePositions == null || visiblePositions.length < filterIndex.size()){
+                visiblePositions = new int[filterIndex.size()];
+            }
+            visibleCount = filterIndex.filter(filterQuery,visiblePositions);
+        }
+        for (int i=0; i<getChildCount(); i++){
+            applyCellVisibility(getChildAt(i),i);
+        }
+    }
+
+    //被过滤掉的子view设为GONE，不参与测量和摆放，可见性变化引起的requestLayout由调用方统一刷新
+    private void applyCellVisibility(View cell, int position){
+        int visibility = isItemVisible(position) ? VISIBLE : GONE;
+        if (cell.getVisibility() == visibility)return;
+        interceptRequestLayout++;
+        try {
+            cell.setVisibility(visibility);
+        }finally {
+            interceptRequestLayout--;
+        }
+    }
+
+    //用于过滤的内容，子view除了children还显示其他内容时重写
+    protected String getFilterLabel(int position){
+        return children.get(position);
+    }
+
+    //某一项是否没有被过滤掉
+    public boolean isItemVisible(int position){
+        return getSlotOfPosition(position) >= 0;
+    }
+
+    //过滤后可见的数量，没有过滤时等于getItemCount()
+    public int getVisibleItemCount(){
+        return visiblePositions == null ? children.size() : visibleCount;
+    }
+
+    //获得屏幕宽
+    private int getWindowWidth(){
+        //获取windowManager
+        WindowManager windowManager = (WindowManager) context.getSystemService(WINDOW_SERVICE);
+        //获取屏幕对象
+        Display defaultDisplay = windowManager.getDefaultDisplay();
+        //获取屏幕的宽、高，单位是像素
+        return defaultDisplay.getWidth();
+    }
+
+    /**
+     * 开启子view的增删移动动画，refresh、submitList等整体替换数据时按差异执行动画，
+     * 只有变化的子view参与动画
+     */
+    public void setItemAnimation(boolean enable){
+        if (enable == (itemAnimator != null))return;
+        if (itemAnimator != null){
+            itemAnimator.endAnimations();
+        }
+        itemAnimator = enable ? new GridItemAnimator(this) : null;
+        pendingItemDiff = null;
+    }
+
+    //子view动画，可以设置时长、获取统计数据，没有开启时为null
+    public GridItemAnimator getItemAnimator(){
+        return itemAnimator;
+    }
+
+    /**
+     * 开启延迟绑定样式，不可见行的背景、字体颜色等样式不在测量时绑定，
+     * 在可滑动的父容器中滑动时，利用空闲时间提前绑定滑动方向上接下来的aheadRows行
+     * 子view的创建、内容绑定和测量不会延迟，所有子view统一大小，仍然需要全部测量
+     * 注意：延迟绑定的背景不参与测量，因此背景drawable不能有固有大小
+     * @param aheadRows 提前绑定样式的行数，小于等于0时关闭
+     */
+    public void setDeferredStyleBinding(int aheadRows){
+        if (aheadRows <= 0){
+            if (styleBinder != null){
+                styleBinder.detach();
+                styleBinder = null;
+                //关闭后所有子view都需要绑定样式
+                requestRefresh();
+            }
+            return;
+        }
+        if (styleBinder == null){
+            styleBinder = new DeferredStyleBinder(this,aheadRows);
+            if (isAttachedToWindow()){
+                styleBinder.attach();
+            }
+        }else {
+            styleBinder.setAheadRows(aheadRows);
+        }
+    }
+
+    //延迟绑定样式，可以获取命中率等统计数据，没有开启时为null
+    public DeferredStyleBinder getDeferredStyleBinder() {
+        return styleBinder;
+    }
+
+    /**
+     * 开启卡顿监控，统计每一帧的耗时和gridView测量、摆放、绑定的耗时，
+     * 每reportFrames帧通知一次p50/p90/p99帧耗时和gridView耗时的占比，离开窗口时通知剩余的帧
+     * @param reportFrames 每多少帧通知一次
+     * @param listener 为null时关闭
+     */
+    public void setJankMonitor(int reportFrames, JankListener listener){
+        if (jankMonitor != null){
+            jankMonitor.detach();
+            jankMonitor = null;
+        }
+        if (listener == null)return;
+        jankMonitor = new GridJankMonitor(this,reportFrames,listener);
+        if (isAttachedToWindow()){
+            jankMonitor.attach();
+        }
+    }
+
+    //卡顿监控，没有开启时为null
+    public GridJankMonitor getJankMonitor() {
+        return jankMonitor;
+    }
+
+    /**
+     * 开启静态渲染缓存，适合绑定后很少变化的gridView
+     * 软件绘制时每一行录制成一个Picture，父容器重绘时直接回放，不再逐个绘制子view和背景，
+     * 只有数据、选中、样式变化的子view所在的行会重新录制
+     * 硬件加速时不录制，内容稳定一段时间后整个gridView使用硬件层，父容器滑动、执行属性动画时只合成这一层纹理，
+     * 子view重绘或者重新摆放时先去掉硬件层，避免每次变化都重新渲染整个层，稳定后再开启；
+     * 硬件层占用宽*高*4字节的显存，超过屏幕面积两倍或者边长超过MAX_LAYER_SIZE时不开启
+     */
+    public void setStaticRendering(boolean enable){
+        if (staticRendering == enable)return;
+        staticRendering = enable;
+        if (enable){
+            scheduleStaticLayer();
+        }else {
+            releaseRenderCache();
+            removeCallbacks(staticLayerRunnable);
+            dropStaticLayer();
+        }
+        invalidate();
+    }
+
+    //是否正在使用静态渲染的硬件层
+    public boolean isStaticLayerEnabled(){
+        return staticLayer;
+    }
+
+    public boolean isStaticRendering(){
+        return staticRendering;
+    }
+
+    //录制的行数
+    public int getRecordedRows() {
+        return recordedRows;
+    }
+
+    //直接使用缓存的行数
+    public int getReplayedRows() {
+        return replayedRows;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (!staticRendering || canvas.isHardwareAccelerated() || getSlotCount() == 0){
+            releaseRenderCache();
+            super.dispatchDraw(canvas);
+            return;
+        }
+        int rows = getRowCount();
+        if (rowPictures == null || rowPictures.length != rows){
+            rowPictures = new Picture[rows];
+            dirtyRows = new boolean[rows];
+        }
+        if (!canvas.getClipBounds(clipRect))return;
+        long drawingTime = getDrawingTime();
+        int cellHeight = getRowHeight() - gapHorizontal;
+        for (int row=0; row<rows; row++){
+            int top = getRowTop(row);
+            //有位移、缩放的子view可能画到其他行，这一行直接绘制，并且不受裁剪区域限制
+            if (hasTransformedCell(row)){
+                drawRow(canvas,row,drawingTime);
+                dirtyRows[row] = true;
+                continue;
+            }
+            if (top >= clipRect.bottom || top + cellHeight <= clipRect.top)continue;
+            Picture picture = rowPictures[row];
+            if (picture == null || dirtyRows[row]){
+                if (picture == null){
+                    picture = new Picture();
+                    rowPictures[row] = picture;
+                }
+                Canvas recording = picture.beginRecording(getWidth(),Math.max(1,cellHeight));
+                recording.translate(0,-top);
+                drawRow(recording,row,drawingTime);
+                picture.endRecording();
+                dirtyRows[row] = false;
+                recordedRows++;
+            }else {
+                replayedRows++;
+            }
+            int saveCount = canvas.save();
+            canvas.translate(0,top);
+            canvas.drawPicture(picture);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    private void drawRow(Canvas canvas, int row, long drawingTime){
+        int end = getRowEnd(row);
+        for (int slot=getRowStart(row); slot<end; slot++){
+            View child = getChildAt(getPositionOfSlot(slot));
+            if (child != null && child.getVisibility() == VISIBLE){
+                drawChild(canvas,child,drawingTime);
+            }
+        }
+    }
+
+    private boolean hasTransformedCell(int row){
+        int end = getRowEnd(row);
+        for (int slot=getRowStart(row); slot<end; slot++){
+            View child = getChildAt(getPositionOfSlot(slot));
+            if (child != null && !child.getMatrix().isIdentity())return true;
+        }
+        return false;
+    }
+
+    //软件绘制时子view的重绘请求经过这里，dirty是子view中的区域，location是子view的位置，标记对应的行需要重新录制
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        if (rowPictures != null){
+            dirtyRect.set(dirty);
+            dirtyRect.offset(location[0],location[1]);
+            if (!dirtyRect.isEmpty()){
+                markRowsDirty(getRowAt(dirtyRect.top),getRowAt(dirtyRect.bottom - 1));
+            }
+        }
+        if (staticRendering && isHardwareAccelerated()){
+            onStaticContentChanged();
+        }
+        return super.invalidateChildInParent(location, dirty);
+    }
+
+    //Android 8.0开始硬件加速时子view的重绘请求不经过invalidateChildInParent，而是经过这里
+    @SuppressLint("NewApi")
+    @Override
+    public void onDescendantInvalidated(View child, View target) {
+        if (staticRendering){
+            onStaticContentChanged();
+        }
+        super.onDescendantInvalidated(child, target);
+    }
+
+    //内容发生变化，去掉硬件层，稳定后再开启
+    private void onStaticContentChanged(){
+        if (!staticRendering || !isHardwareAccelerated())return;
+        dropStaticLayer();
+        scheduleStaticLayer();
+    }
+
+    private void scheduleStaticLayer(){
+        removeCallbacks(staticLayerRunnable);
+        if (staticRendering && isAttachedToWindow()){
+            postDelayed(staticLayerRunnable,STATIC_LAYER_DELAY);
+        }
+    }
+
+    private void enableStaticLayer(){
+        if (!staticRendering || staticLayer || !isHardwareAccelerated() || getLayerType() != LAYER_TYPE_NONE)return;
+        int width = getWidth();
+        int height = getHeight();
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        if (width == 0 || height == 0 || width > MAX_LAYER_SIZE || height > MAX_LAYER_SIZE
+                || (long) width * height > 2L * metrics.widthPixels * metrics.heightPixels)return;
+        staticLayer = true;
+        setLayerType(LAYER_TYPE_HARDWARE,null);
+    }
+
+    //只去掉自己开启的硬件层，调用方设置的层类型不修改
+    private void dropStaticLayer(){
+        if (!staticLayer)return;
+        staticLayer = false;
+        setLayerType(LAYER_TYPE_NONE,null);
+    }
+
+    private void markRowsDirty(int from, int to){
+        if (rowPictures == null)return;
+        for (int row=Math.max(0,from); row<=to && row<dirtyRows.length; row++){
+            dirtyRows[row] = true;
+        }
+    }
+
+    //录制的行，下一次软件绘制时重新录制
+    private void releaseRenderCache(){
+        rowPictures = null;
+        dirtyRows = null;
+    }
+
+    //gridView自己执行View动画时(例如界面切换动画)不等内容稳定，直接开启硬件层
+    @Override
+    protected void onAnimationStart() {
+        super.onAnimationStart();
+        if (staticRendering){
+            removeCallbacks(staticLayerRunnable);
+            enableStaticLayer();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (styleBinder != null){
+            styleBinder.attach();
+        }
+        if (jankMonitor != null){
+            jankMonitor.attach();
+        }
+        getViewTreeObserver().addOnScrollChangedListener(loadMoreScrollListener);
+        context.getApplicationContext().registerComponentCallbacks(memoryCallbacks);
+        scheduleStaticLayer();
+        //子view在离开窗口时放回了池中，需要重新创建
+        if (viewPool != null && getChildCount() == 0 && !children.isEmpty()){
+            requestRefresh();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (styleBinder != null){
+            styleBinder.detach();
+        }
+        if (jankMonitor != null){
+            jankMonitor.detach();
+        }
+        getViewTreeObserver().removeOnScrollChangedListener(loadMoreScrollListener);
+        context.getApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+        removeCallbacks(checkLoadMoreRunnable);
+        //离开窗口后子view放回池中给其他gridView使用，放回时会重置显示状态
+        if (viewPool != null){
+            removeAllCells(true);
+        }else if (itemAnimator != null){
+            itemAnimator.endAnimations();
+        }
+        //缓存都可以重建，全部释放；没有子view池时子view保留，重新附加时不需要重新创建
+        removeCallbacks(staticLayerRunnable);
+        dropStaticLayer();
+        releaseRenderCache();
+        releasePrecomputedTexts();
+        releaseMeasureCache();
+        releaseFilterIndex();
+    }
+
+    //子view在内存不足时被释放了，重新可见时再创建
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility == VISIBLE && getChildCount() == 0 && !children.isEmpty()){
+            requestRefresh();
+        }
+    }
+
+    /**
+     * 内存不足时按等级释放，附加到窗口期间自动调用，也可以主动调用
+     * 内存偏低：释放预测量的文字，子view池释放一半
+     * 内存严重不足或者应用进入后台：再释放测量缓存、过滤索引，子view池全部释放
+     * 应用进入后台且界面不可见：再释放所有子view，重新可见时再创建
+     * @param level {@link ComponentCallbacks2}中的TRIM_MEMORY_XXX
+     */
+    public void trimMemory(int level){
+        int tier = GridViewPool.getTrimTier(level);
+        if (tier == GridViewPool.TRIM_NONE)return;
+        releaseRenderCache();
+        //硬件层在内容下一次变化并稳定后重新开启
+        removeCallbacks(staticLayerRunnable);
+        dropStaticLayer();
+        releasePrecomputedTexts();
+        if (viewPool != null){
+            viewPool.trimMemory(level);
+        }
+        if (tier == GridViewPool.TRIM_ALL){
+            releaseMeasureCache();
+            releaseFilterIndex();
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND && getWindowVisibility() != VISIBLE){
+            releaseCells();
+        }
+    }
+
+    //预测量的文字只在重新绑定时使用，释放后直接设置文字，下一次submitList重新预测量
+    private void releasePrecomputedTexts(){
+        CharSequence[] texts = precomputedTexts;
+        if (texts == null)return;
+        precomputedTexts = null;
+        long bytes = 16 + 4L * texts.length;
+        for (CharSequence text : texts){
+            //文字本身和每个字符的宽度
+            if (text != null){
+                bytes += 64 + 6L * text.length();
+            }
+        }
+        releasedBytes += bytes;
+    }
+
+    //自己的测量缓存，下一次测量时重新创建，共用的由子view池释放
+    private void releaseMeasureCache(){
+        if (measureCache == null)return;
+        releasedBytes += measureCache.getMemoryFootprint();
+        measureCache = null;
+    }
+
+    //过滤索引，下一次过滤时重新建立
+    private void releaseFilterIndex(){
+        if (filterIndex == null)return;
+        releasedBytes += filterIndex.getMemoryFootprint();
+        filterIndex = null;
+    }
+
+    //释放所有子view，内存不足时池也在释放，不放回池中
+    private void releaseCells(){
+        releasedViews += removeAllCells(false);
+    }
+
+    /**
+     * 移除所有子view，先结束动画，动画中的子view带着中间状态
+     * @param pool 是否放回池中，放回时由池重置可见性、透明度、位移、缩放和选中状态
+     * @return 移除的数量
+     */
+    private int removeAllCells(boolean pool){
+        int count = getChildCount();
+        if (count == 0)return 0;
+        if (itemAnimator != null){
+            itemAnimator.endAnimations();
+        }
+        View[] cells = new View[count];
+        for (int i=0; i<count; i++){
+            cells[i] = getChildAt(i);
+            cells[i].animate().cancel();
+        }
+        removeAllViewsInLayout();
+        if (pool){
+            recycleCells(cells);
+        }else {
+            for (View cell : cells){
+                onCellRecycled(cell);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 设置共用的子view池和测量缓存，多个样式相同的gridView设置同一个池可以减少子view的创建和测量
+     * @param viewPool 为null时不使用
+     */
+    public void setViewPool(GridViewPool viewPool){
+        this.viewPool = viewPool;
+    }
+
+    public GridViewPool getViewPool(){
+        return viewPool;
+    }
+
+    /**
+     * 开启虚拟无障碍节点，TalkBack等无障碍服务不再访问每一个子view，
+     * 而是通过行列几何关系按需创建虚拟节点，适合数据量很大的场景
+     */
+    public void setVirtualAccessibility(boolean enable){
+        if (enable == (accessibilityHelper != null))return;
+        accessibilityHelper = enable ? new GridAccessibilityHelper(this) : null;
+        ViewCompat.setAccessibilityDelegate(this,accessibilityHelper);
+    }
+
+    //子view的无障碍状态发生了变化，例如选中状态
+    protected void notifyItemAccessibilityChanged(int position){
+        if (accessibilityHelper != null){
+            accessibilityHelper.invalidateVirtualView(position);
+        }
+    }
+
+    //开启虚拟节点时子view不参与无障碍，虚拟节点和真实的子view不能同时存在
+    @Override
+    public void addChildrenForAccessibility(ArrayList<View> outChildren) {
+        if (accessibilityHelper != null)return;
+        super.addChildrenForAccessibility(outChildren);
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        if (accessibilityHelper != null && accessibilityHelper.dispatchHoverEvent(event)){
+            return true;
+        }
+        return super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        if (accessibilityHelper != null && accessibilityHelper.dispatchKeyEvent(event)){
+            return true;
+        }
+        return super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        if (accessibilityHelper != null){
+            accessibilityHelper.onFocusChanged(gainFocus,direction,previouslyFocusedRect);
+        }
+    }
+
+    //数据的数量
+    public int getItemCount(){
+        return children.size();
+    }
+
+    //某一项的内容
+    public String getItem(int position){
+        return children.get(position);
+    }
+
+    //某一项用于绑定的内容，紧凑存储时是不复制字符的视图
+    protected CharSequence getItemLabel(int position){
+        return getLabel(children,position);
+    }
+
+    static CharSequence getLabel(List<String> list, int position){
+        return list instanceof CompactLabelStore ? ((CompactLabelStore) list).getLabel(position) : list.get(position);
+    }
+
+    /**
+     * 是否使用紧凑存储，数据量很大(上万项)时开启可以显著减少内存占用，已有的数据会转换过去
+     * @param compact 为true时所有内容存放在CompactLabelStore共用的char数组中，否则使用ArrayList
+     */
+    public void setCompactStorage(boolean compact){
+        if (compact == isCompactStorage())return;
+        children = convertStore(children,compact,false);
+    }
+
+    public boolean isCompactStorage(){
+        return children instanceof CompactLabelStore;
+    }
+
+    static List<String> convertStore(List<String> list, boolean compact, boolean intern){
+        List<String> store = compact ? new CompactLabelStore(intern) : new ArrayList<String>(list.size());
+        store.addAll(list);
+        return store;
+    }
+
+    //内容占用的内存估算，单位字节，可以用来比较开启紧凑存储前后的差别
+    public long getLabelFootprint(){
+        return getFootprint(children);
+    }
+
+    static long getFootprint(List<String> list){
+        return list instanceof CompactLabelStore ? ((CompactLabelStore) list).getMemoryFootprint() : CompactLabelStore.estimateFootprint(list);
+    }
+
+    //某一项是否被选中，子类支持选择时重写
+    public boolean isItemSelected(int position){
+        return false;
+    }
+
+    //某一项是否可用，子类支持禁用时重写
+    public boolean isItemEnabled(int position){
+        return true;
+    }
+
+    //选择模式 0：不支持选择 1：单选 2：多选
+    protected int getSelectionMode(){
+        return 0;
+    }
+
+    public void setItemClickListener(ItemClickListener itemClickListener) {
+        this.itemClickListener = itemClickListener;
+    }
+
+    public void setItemLongClickListener(ItemLongClickListener itemLongClickListener) {
+        this.itemLongClickListener = itemLongClickListener;
+    }
+
+    public interface ItemClickListener{
+        public void onItemClick(int position, String content);
+    }
+
+    public interface LoadMoreListener{
+        /**
+         * 需要加载下一页
+         * @param itemCount 当前的数量
+         */
+        public void onLoadMore(int itemCount);
+    }
+
+    public interface JankListener{
+        /**
+         * 一个统计窗口结束
+         * @param report 统计结果
+         */
+        public void onJankReport(GridJankMonitor.Report report);
+    }
+
+    public interface ItemLongClickListener{
+        public boolean onItemLongClick(int position, String content);
     }
 }
@@ -1,10 +1,10 @@
 package com.example.customgridview;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.content.res.ColorStateList;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.StateListDrawable;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -13,7 +13,9 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.core.content.ContextCompat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  *  @Author wonderful
@@ -34,7 +36,7 @@ public final class TabContentGridView extends WonderfulGridView{
     private List<String> tabs = new ArrayList<>();
 
     public TabContentGridView(Context context) {
-        this(context,null);
+        this(context,(AttributeSet) null);
     }
 
     public TabContentGridView(Context context, AttributeSet attrs) {
@@ -42,21 +44,27 @@ public final class TabContentGridView extends WonderfulGridView{
     }
 
     public TabContentGridView(Context context, AttributeSet attrs, int defStyleAttr) {
-        super(context, attrs, defStyleAttr);
-        init(context,attrs);
+        this(context, attrs, defStyleAttr, GridStyle.obtain(context,attrs));
     }
 
-    //初始化
-    @SuppressLint("ResourceAsColor")
-    private void init(Context context, AttributeSet attrs){
+    //在代码中创建，多个gridView可以共用同一个样式
+    public TabContentGridView(Context context, GridStyle style) {
+        this(context, null, 0, style);
+    }
 
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.wonderfulGridViewStyle);
+    private TabContentGridView(Context context, AttributeSet attrs, int defStyleAttr, GridStyle style) {
+        super(context, attrs, defStyleAttr, style);
+        init(style);
+    }
 
-        tabSelectDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_tabSelectDrawable,R.drawable.rect_blue_blank);
-        tabDefaultDrawable = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_tabDefaultDrawable,R.drawable.rect_gray_blank);
+    //初始化
+    private void init(GridStyle style){
 
-        selectDividerColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_selectDividerColor,forbiddenColor);
-        defaultDividerColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_defaultDividerColor,forbiddenColor);
+        tabSelectDrawable = style.tabSelectDrawable;
+        tabDefaultDrawable = style.tabDefaultDrawable;
+
+        selectDividerColor = style.selectDividerColor;
+        defaultDividerColor = style.defaultDividerColor;
 
         //如果没有设置分割线的颜色则默认和字体颜色一致
         if (selectDividerColor == forbiddenColor){
@@ -65,226 +73,202 @@ public final class TabContentGridView extends WonderfulGridView{
         if (defaultDividerColor == forbiddenColor){
             defaultDividerColor = defaultTextColor;
         }
+    }
 
-        typedArray.recycle();
+    //子view的结构和父类不同，不能共用
+    @Override
+    protected int getCellType() {
+        return 1;
     }
 
-    /**
-     * 添加子view
-     * @param width 子view的宽
-     * @param height 子view的高
-     */
+    //tab标签也会影响测量结果
     @Override
-    protected void addChildrenView(int width, int height, int maxLine) {
-        removeAllViews();
-        for (int i=0; i<children.size(); i++){
-            final String child = children.get(i);
-            final String tab = tabs.get(i);
-
-            TabContentView tabContentView = new TabContentView(context,this);
-            if (maxLine >0){
-                tabContentView.content.setMaxLines(maxLine);
-            }
-            tabContentView.targetView.setLayoutParams(new ViewGroup.LayoutParams(width, height));
+    protected long hashMeasureContent(long hash, int position) {
+        return super.hashMeasureContent(TextMeasureCache.hash(hash,getLabel(tabs,position)),position);
+    }
 
-            //设置默认背景/字体颜色
-            //设置背景drawable,
-            if (defaultDrawable != -1){
-                tabContentView.content.setBackgroundResource(defaultDrawable);
-            }
-            if (tabDefaultDrawable != -1){
-                tabContentView.tab.setBackgroundResource(tabDefaultDrawable);
-            }
-            //设置背景颜色，优先级更高，如果都设置了则会覆盖drawable
-            if (defaultColor != forbiddenColor){
-                tabContentView.content.setBackgroundColor(defaultColor);
-                tabContentView.tab.setBackgroundColor(defaultColor);
-            }
-            //设置字体颜色
-            if (defaultTextColor != forbiddenColor){
-                tabContentView.content.setTextColor(defaultTextColor);
-                tabContentView.tab.setTextColor(defaultTextColor);
-            }
-            //设置分割线颜色
-            if (defaultDividerColor != forbiddenColor){
-                tabContentView.divider.setBackgroundColor(defaultDividerColor);
-            }
+    //tab标签也可以用来过滤
+    @Override
+    protected String getFilterLabel(int position) {
+        String tab = tabs.get(position);
+        return tab == null ? super.getFilterLabel(position) : super.getFilterLabel(position) + " " + tab;
+    }
 
-            //如果是点击模式，直接设置选择器即可
-            //TODO 有bug，不起作用
-            if (responseMode == 0){
-                //TODO 点击模式下只能修改targetView的样式，因为他内部还有子view，无法统一处理
-                //设置背景选择器
-                StateListDrawable drawable = new StateListDrawable();
-                Drawable drawableSelect = ContextCompat.getDrawable(context,selectDrawable);
-                Drawable drawableNormal = ContextCompat.getDrawable(context,defaultDrawable);
-                drawable.addState(new int[]{android.R.attr.state_pressed},drawableSelect);//选中
-                drawable.addState(new int[]{},drawableNormal);                            //未选中
-                //targetView选择器
-                tabContentView.targetView.setBackground(drawable);
-            }
-            //否则就是单选或多选模式，需要设置选中的颜色
-            else {
-                //设置当前选中的背景、颜色
-                //这很重要，因为当一个View由GONE变为VISIBLE的时候会触发onMeasure方法
-                //而onMeasure会多次调用addChildrenView，这意味着childView会被重新创建
-                //如果choosePosition.get(i)==true说明之前就已经做过选择操作，因此需要设置当前childView为选中状态
-                if (choosePosition.get(i) != null && choosePosition.get(i)){
-                    //设置背景
-                    if (selectDrawable != -1){
-                        tabContentView.content.setBackgroundResource(selectDrawable);
-                    }
-                    if (tabSelectDrawable != -1){
-                        tabContentView.tab.setBackgroundResource(tabSelectDrawable);
-                    }
-                    if(selectColor != forbiddenColor){
-                        tabContentView.content.setBackgroundColor(selectColor);
-                        tabContentView.tab.setBackgroundColor(selectColor);
-                    }
-                    //设置字体颜色
-                    if (selectTextColor != forbiddenColor){
-                        tabContentView.content.setTextColor(selectTextColor);
-                        tabContentView.tab.setTextColor(selectTextColor);
-                    }
-                    //设置分割线颜色
-                    if (selectDividerColor != forbiddenColor){
-                        tabContentView.divider.setBackgroundColor(selectDividerColor);
-                    }
-                }
-            }
-            //设置padding
-            if (gridPadding != -1){
-                tabContentView.content.setPadding(gridPadding,gridPadding,gridPadding,gridPadding);
-                tabContentView.tab.setPadding(gridPadding,gridPadding,gridPadding,gridPadding);
-            }else {
-                tabContentView.content.setPadding(leftPadding,topPadding,rightPadding,bottomPadding);
-                tabContentView.tab.setPadding(leftPadding,topPadding,rightPadding,bottomPadding);
-            }
-            //居中显示
-            tabContentView.content.setGravity(Gravity.CENTER);
-            tabContentView.tab.setGravity(Gravity.CENTER);
-            //设置字体大小
-            if (textSize != -1){
-                tabContentView.content.setTextSize(textSize);
-                tabContentView.tab.setTextSize(textSize);
-            }
-            //设置字体内容
-            tabContentView.content.setText(child);
-            tabContentView.tab.setText(tab);
-            //设置点击监听事件
-            final int finalI = i;
-            tabContentView.targetView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    onItemClick(finalI,child);
-                }
-            });
-
-            addView(tabContentView.targetView);
-        }
+    @Override
+    protected View createCell() {
+        TabContentView tabContentView = new TabContentView(context,this);
+        //居中显示
+        tabContentView.content.setGravity(Gravity.CENTER);
+        tabContentView.tab.setGravity(Gravity.CENTER);
+        return tabContentView.targetView;
     }
 
     @Override
-    public void clearSelectItem(int position) {
-        //清除选中的背景、颜色
-        TabContentView tabContentView = new TabContentView(getChildAt(position));
-        if (tabContentView.targetView != null){
-            //设置背景
-            if (defaultDrawable != -1){
-                tabContentView.content.setBackgroundResource(defaultDrawable);
-            }
-            if (tabDefaultDrawable != -1){
-                tabContentView.tab.setBackgroundResource(tabDefaultDrawable);
-            }
-            if(defaultColor != forbiddenColor){
-                tabContentView.content.setBackgroundColor(defaultColor);
-                tabContentView.tab.setBackgroundColor(defaultColor);
-            }
-            //设置字体颜色
-            if (defaultTextColor != forbiddenColor){
-                tabContentView.content.setTextColor(defaultTextColor);
-                tabContentView.tab.setTextColor(defaultTextColor);
-            }
-            //设置分割线颜色
-            if (defaultDividerColor != forbiddenColor){
-                tabContentView.divider.setBackgroundColor(defaultDividerColor);
-            }
+    protected void bindCell(View cell, int position, int maxLine) {
+        TabContentView tabContentView = TabContentView.of(cell);
+        tabContentView.content.setMaxLines(maxLine > 0 ? maxLine : Integer.MAX_VALUE);
+        //设置字体大小
+        if (textSize != -1){
+            tabContentView.content.setTextSize(textSize);
+            tabContentView.tab.setTextSize(textSize);
+        }
+        bindCellPadding(cell);
+        //设置字体内容
+        bindCellText(tabContentView.content,position);
+        CharSequence tab = getLabel(tabs,position);
+        if (!TextUtils.equals(tabContentView.tab.getText(),tab)){
+            tabContentView.tab.setText(tab);
         }
-        choosePosition.remove(position);
     }
 
     @Override
-    public void setSelectItem(int position) {
-        //点击模式下将不会有任何作用
+    protected void bindCellStyle(View cell, int position) {
+        TabContentView tabContentView = TabContentView.of(cell);
+        //设置默认背景/字体颜色
+        applyDefaultStyle(tabContentView);
+
+        //如果是点击模式，直接设置选择器即可
+        //TODO 有bug，不起作用
         if (responseMode == 0){
-            //TODO
+            //TODO 点击模式下只能修改targetView的样式，因为他内部还有子view，无法统一处理
+            //设置背景选择器
+            StateListDrawable drawable = new StateListDrawable();
+            Drawable drawableSelect = ContextCompat.getDrawable(context,selectDrawable);
+            Drawable drawableNormal = ContextCompat.getDrawable(context,defaultDrawable);
+            drawable.addState(new int[]{android.R.attr.state_pressed},drawableSelect);//选中
+            drawable.addState(new int[]{},drawableNormal);                            //未选中
+            //targetView选择器
+            tabContentView.targetView.setBackground(drawable);
         }
-        //单选模式
-        else if (responseMode == 1){
-            //先清除所有选中的背景、颜色
-            clearAll();
-            //设置当前选中的背景、颜色
-            TabContentView tabContentView = new TabContentView(getChildAt(position));
-            if (tabContentView.targetView != null){
-                //设置背景
-                if (selectDrawable != -1){
-                    tabContentView.content.setBackgroundResource(selectDrawable);
-                }
-                if (tabSelectDrawable != -1){
-                    tabContentView.tab.setBackgroundResource(tabSelectDrawable);
-                }
-                if(selectColor != forbiddenColor){
-                    tabContentView.content.setBackgroundColor(selectColor);
-                    tabContentView.tab.setBackgroundColor(selectColor);
-                }
-                //设置字体颜色
-                if (selectTextColor != forbiddenColor){
-                    tabContentView.content.setTextColor(selectTextColor);
-                    tabContentView.tab.setTextColor(selectTextColor);
-                }
-                //设置分割线颜色
-                if (selectDividerColor != forbiddenColor){
-                    tabContentView.divider.setBackgroundColor(selectDividerColor);
-                }
+        //开启动画时背景、字体颜色都使用选择器，切换选中状态时只修改view的selected状态，状态会分发给内部的子view
+        else if (isSelectAnimated()){
+            setSelector(tabContentView.content,createSelector(selectDrawable,defaultDrawable,selectColor,defaultColor));
+            setSelector(tabContentView.tab,createSelector(tabSelectDrawable,tabDefaultDrawable,selectColor,defaultColor));
+            setSelector(tabContentView.divider,createSelector(-1,-1,selectDividerColor,defaultDividerColor));
+            ColorStateList textColor = createColorSelector(selectTextColor,defaultTextColor);
+            if (textColor != null){
+                tabContentView.content.setTextColor(textColor);
+                tabContentView.tab.setTextColor(textColor);
             }
+            applySelectState(cell,choosePosition.get(position) != null && choosePosition.get(position),false);
         }
-        //多选模式
-        else if (responseMode == 2){
+        //否则就是单选或多选模式，需要设置选中的颜色
+        else {
             //设置当前选中的背景、颜色
-            TabContentView tabContentView = new TabContentView(getChildAt(position));
-            if (tabContentView.targetView != null){
-                //设置背景
-                if (selectDrawable != -1){
-                    tabContentView.content.setBackgroundResource(selectDrawable);
-                }
-                if (tabSelectDrawable != -1){
-                    tabContentView.tab.setBackgroundResource(tabSelectDrawable);
-                }
-                if(selectColor != forbiddenColor){
-                    tabContentView.content.setBackgroundColor(selectColor);
-                    tabContentView.tab.setBackgroundColor(selectColor);
-                }
-                //设置字体颜色
-                if (selectTextColor != forbiddenColor){
-                    tabContentView.content.setTextColor(selectTextColor);
-                    tabContentView.tab.setTextColor(selectTextColor);
-                }
-                //设置分割线颜色
-                if (selectDividerColor != forbiddenColor){
-                    tabContentView.divider.setBackgroundColor(selectDividerColor);
-                }
+            //这很重要，因为当一个View由GONE变为VISIBLE的时候会触发onMeasure方法
+            //而onMeasure会多次调用addChildrenView，这意味着childView会被重新创建
+            //如果choosePosition.get(i)==true说明之前就已经做过选择操作，因此需要设置当前childView为选中状态
+            if (choosePosition.get(position) != null && choosePosition.get(position)){
+                applySelectStyle(tabContentView);
             }
         }
-        //保存选中的位置
-        choosePosition.put(position,true);
+        //背景可能带有padding，重新设置一次
+        bindCellPadding(cell);
+    }
+
+    @Override
+    protected void bindCellPadding(View cell) {
+        TabContentView tabContentView = TabContentView.of(cell);
+        if (gridPadding != -1){
+            tabContentView.content.setPadding(gridPadding,gridPadding,gridPadding,gridPadding);
+            tabContentView.tab.setPadding(gridPadding,gridPadding,gridPadding,gridPadding);
+        }else {
+            tabContentView.content.setPadding(leftPadding,topPadding,rightPadding,bottomPadding);
+            tabContentView.tab.setPadding(leftPadding,topPadding,rightPadding,bottomPadding);
+        }
+    }
+
+    //设置选中的背景、颜色
+    private void applySelectStyle(TabContentView tabContentView){
+        //设置背景
+        if (selectDrawable != -1){
+            tabContentView.content.setBackgroundResource(selectDrawable);
+        }
+        if (tabSelectDrawable != -1){
+            tabContentView.tab.setBackgroundResource(tabSelectDrawable);
+        }
+        if(selectColor != forbiddenColor){
+            tabContentView.content.setBackgroundColor(selectColor);
+            tabContentView.tab.setBackgroundColor(selectColor);
+        }
+        //设置字体颜色
+        if (selectTextColor != forbiddenColor){
+            tabContentView.content.setTextColor(selectTextColor);
+            tabContentView.tab.setTextColor(selectTextColor);
+        }
+        //设置分割线颜色
+        if (selectDividerColor != forbiddenColor){
+            tabContentView.divider.setBackgroundColor(selectDividerColor);
+        }
+    }
+
+    //设置默认的背景、颜色
+    private void applyDefaultStyle(TabContentView tabContentView){
+        //设置背景drawable,
+        if (defaultDrawable != -1){
+            tabContentView.content.setBackgroundResource(defaultDrawable);
+        }
+        if (tabDefaultDrawable != -1){
+            tabContentView.tab.setBackgroundResource(tabDefaultDrawable);
+        }
+        //设置背景颜色，优先级更高，如果都设置了则会覆盖drawable
+        if (defaultColor != forbiddenColor){
+            tabContentView.content.setBackgroundColor(defaultColor);
+            tabContentView.tab.setBackgroundColor(defaultColor);
+        }
+        //设置字体颜色
+        if (defaultTextColor != forbiddenColor){
+            tabContentView.content.setTextColor(defaultTextColor);
+            tabContentView.tab.setTextColor(defaultTextColor);
+        }
+        //设置分割线颜色
+        if (defaultDividerColor != forbiddenColor){
+            tabContentView.divider.setBackgroundColor(defaultDividerColor);
+        }
+    }
+
+    private void setSelector(View view, Drawable selector){
+        if (selector != null){
+            view.setBackground(selector);
+        }
+    }
+
+    @Override
+    protected void bindSelectStyle(View cell, boolean selected) {
+        if (isSelectAnimated()){
+            applySelectState(cell,selected,true);
+            return;
+        }
+        TabContentView tabContentView = TabContentView.of(cell);
+        if (selected){
+            applySelectStyle(tabContentView);
+        }else {
+            applyDefaultStyle(tabContentView);
+        }
+    }
+
+    //tab标签重复很多，紧凑存储时对内容相同的tab标签去重
+    @Override
+    public void setCompactStorage(boolean compact) {
+        super.setCompactStorage(compact);
+        if (compact != tabs instanceof CompactLabelStore){
+            tabs = convertStore(tabs,compact,true);
+        }
+    }
+
+    @Override
+    public long getLabelFootprint() {
+        return super.getLabelFootprint() + getFootprint(tabs);
     }
 
     @Override
     public void removeAll() {
+        prepareItemAnimation(Collections.<String>emptyList());
         this.children.clear();
         this.tabs.clear();
-        this.choosePosition.clear();
-        requestLayout();
+        onDataChanged();
+        resetSelection();
+        requestRefresh();
     }
 
     @Override
@@ -299,6 +283,22 @@ public final class TabContentGridView extends WonderfulGridView{
         }
         this.children.addAll(children);
         this.tabs.addAll(tabs);
+        onDataChanged();
+        applyPendingRestore();
+    }
+
+    @Override
+    public void appendItems(List<String> items) {
+        throw new RuntimeException("请使用二参的appendItems重载方法！！！");
+    }
+
+    public void appendItems(List<String> items, List<String> tabs) {
+        if (items == null || tabs == null)return;
+        if (items.size() != tabs.size()){
+            throw new IllegalArgumentException("items和tabs的数量必须一致！！！");
+        }
+        this.tabs.addAll(tabs);
+        super.appendItems(items);
     }
 
     //禁止使用此方法
@@ -312,12 +312,78 @@ public final class TabContentGridView extends WonderfulGridView{
         if (children.size() != tabs.size()){
             throw new IllegalArgumentException("children和tabs的数量必须一致！！！");
         }
+        prepareItemAnimation(children);
         this.children.clear();
         this.children.addAll(children);
         this.tabs.clear();
         this.tabs.addAll(tabs);
-        this.choosePosition.clear();
-        requestLayout();
+        onDataChanged();
+        resetSelection();
+        applyPendingRestore();
+        requestRefresh();
+    }
+
+    /**
+     * 修改一个tab标签，例如未读数，只重新绑定对应子view的tab，选中状态保留
+     * 新标签不改变子view的统一大小时不重新测量gridView
+     * @param position 位置
+     * @param tab tab标签
+     */
+    public void setTab(int position, String tab) {
+        if (position < 0 || position >= tabs.size())return;
+        if (TextUtils.equals(tabs.get(position),tab))return;
+        tabs.set(position,tab);
+        rebindCell(position);
+    }
+
+    /**
+     * 批量修改tab标签，其中一个需要完整刷新时其余的不再单独重新绑定
+     * @param tabs key为位置，value为tab标签
+     */
+    public void setTabs(Map<Integer,String> tabs) {
+        if (tabs == null)return;
+        List<Integer> changed = new ArrayList<>(tabs.size());
+        for (Map.Entry<Integer,String> entry : tabs.entrySet()){
+            int position = entry.getKey();
+            if (position < 0 || position >= this.tabs.size())continue;
+            if (TextUtils.equals(this.tabs.get(position),entry.getValue()))continue;
+            this.tabs.set(position,entry.getValue());
+            changed.add(position);
+        }
+        for (int position : changed){
+            if (!rebindCell(position))return;
+        }
+    }
+
+    //禁止使用此方法
+    @Override
+    public void submitList(List<String> list) {
+        throw new RuntimeException("请使用二参的submitList重载方法！！！");
+    }
+
+    /**
+     * 提交新数据，可以在任意线程调用，提交后调用方不能再修改两个列表
+     * @param children 内容
+     * @param tabs tab标签
+     */
+    public void submitList(List<String> children, List<String> tabs) {
+        if (children == null || tabs == null)return;
+        if (children.size() != tabs.size()){
+            throw new IllegalArgumentException("children和tabs的数量必须一致！！！");
+        }
+        submit(children,tabs);
+    }
+
+    @Override
+    protected void onListSubmitted(List<String> list, List<String> extra, GridDiff diff) {
+        super.onListSubmitted(list, extra, diff);
+        //内容没有变化时不会重新测量，tab标签变化了需要自己刷新
+        boolean tabsChanged = !tabs.equals(extra);
+        tabs.clear();
+        tabs.addAll(extra);
+        if (tabsChanged){
+            requestRefresh();
+        }
     }
 
     private static class TabContentView{
@@ -333,14 +399,12 @@ public final class TabContentGridView extends WonderfulGridView{
             tab = targetView.findViewById(R.id.tab);
             content = targetView.findViewById(R.id.content);
             divider = targetView.findViewById(R.id.divider);
+            //保存在targetView中，复用时不需要再查找子view
+            targetView.setTag(this);
         }
 
-        TabContentView(View targetView){
-            if (targetView == null)return;
-            this.targetView = targetView;
-            tab = targetView.findViewById(R.id.tab);
-            content = targetView.findViewById(R.id.content);
-            divider = targetView.findViewById(R.id.divider);
+        static TabContentView of(View targetView){
+            return (TabContentView) targetView.getTag();
         }
     }
 }
@@ -0,0 +1,255 @@
+package com.example.customgridview;
+
+import java.util.Arrays;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-10-15
+ *  @Version 1.0
+ *  @Description 文字测量结果缓存，大小固定的LRU
+ */
+public class TextMeasureCache {
+
+    //没有缓存
+    static final int NONE = -1;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    //宽高各占16位，宽的最高位不用，保证压缩后不是负数
+    private static final int MAX_WIDTH = 0x7fff;
+    private static final int MAX_HEIGHT = 0xffff;
+
+    private final int maxSize;
+    //节点，下标相同的元素属于同一个节点
+    private final long[] keys;
+    private final int[] values;
+    //最近使用的顺序，双向链表，head是最近使用的，tail是最久没使用的
+    private final int[] prev;
+    private final int[] next;
+    private int head = -1;
+    private int tail = -1;
+    private int size;
+    //哈希表，线性探测，保存节点下标+1，0表示空
+    private final int[] table;
+    private final int mask;
+
+    //统计数据
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    //缓存对应的字体缩放，变化后缓存全部失效
+    private float fontScale = -1;
+
+    public TextMeasureCache(int maxSize) {
+        if (maxSize <= 0){
+            throw new IllegalArgumentException("maxSize必须大于0！！！");
+        }
+        this.maxSize = maxSize;
+        keys = new long[maxSize];
+        values = new int[maxSize];
+        prev = new int[maxSize];
+        next = new int[maxSize];
+        //负载因子不超过0.5
+        int capacity = Integer.highestOneBit(maxSize * 2 - 1) << 1;
+        table = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    //获取缓存的宽高，没有时返回NONE
+    int get(long key) {
+        int slot = findSlot(key);
+        if (table[slot] == 0){
+            missCount++;
+            return NONE;
+        }
+        hitCount++;
+        int node = table[slot] - 1;
+        moveToHead(node);
+        return values[node];
+    }
+
+    void put(long key, int width, int height) {
+        //超出范围的不缓存
+        if (width < 0 || height < 0 || width > MAX_WIDTH || height > MAX_HEIGHT)return;
+        int value = pack(width,height);
+        int slot = findSlot(key);
+        if (table[slot] != 0){
+            int node = table[slot] - 1;
+            values[node] = value;
+            moveToHead(node);
+            return;
+        }
+        int node;
+        if (size < maxSize){
+            node = size++;
+        }else {
+            //复用最久没使用的节点
+            node = tail;
+            removeSlot(findSlot(keys[node]));
+            unlink(node);
+            evictionCount++;
+            slot = findSlot(key);
+        }
+        keys[node] = key;
+        values[node] = value;
+        table[slot] = node + 1;
+        linkHead(node);
+    }
+
+    private int findSlot(long key) {
+        int slot = mix(key) & mask;
+        while (table[slot] != 0 && keys[table[slot] - 1] != key){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    //删除哈希表中的一项，后面探测链上的元素前移，保证查找不会中断
+    private void removeSlot(int slot) {
+        table[slot] = 0;
+        int current = (slot + 1) & mask;
+        while (table[current] != 0){
+            int node = table[current] - 1;
+            int ideal = mix(keys[node]) & mask;
+            //ideal不在(slot, current]区间内时可以移动到slot
+            boolean movable = slot <= current ? (ideal <= slot || ideal > current) : (ideal <= slot && ideal > current);
+            if (movable){
+                table[slot] = table[current];
+                table[current] = 0;
+                slot = current;
+            }
+            current = (current + 1) & mask;
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key ^ (key >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private void moveToHead(int node) {
+        if (node == head)return;
+        unlink(node);
+        linkHead(node);
+    }
+
+    private void linkHead(int node) {
+        prev[node] = -1;
+        next[node] = head;
+        if (head != -1){
+            prev[head] = node;
+        }
+        head = node;
+        if (tail == -1){
+            tail = node;
+        }
+    }
+
+    private void unlink(int node) {
+        int p = prev[node];
+        int n = next[node];
+        if (p != -1){
+            next[p] = n;
+        }else {
+            head = n;
+        }
+        if (n != -1){
+            prev[n] = p;
+        }else {
+            tail = p;
+        }
+    }
+
+    static int pack(int width, int height) {
+        return (width << 16) | height;
+    }
+
+    static int width(int size) {
+        return size >>> 16;
+    }
+
+    static int height(int size) {
+        return size & MAX_HEIGHT;
+    }
+
+    //计算key，FNV-1a哈希
+    static long hash(long hash, CharSequence text) {
+        if (text == null){
+            return hash(hash,-1);
+        }
+        for (int i=0; i<text.length(); i++){
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        //长度也参与计算，避免拼接后相同
+        return hash(hash,text.length());
+    }
+
+    static long hash(long hash, int value) {
+        for (int i=0; i<4; i++){
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    static long newHash() {
+        return FNV_OFFSET;
+    }
+
+    //字体缩放变化后测量结果全部失效
+    void checkFontScale(float fontScale) {
+        if (this.fontScale == fontScale)return;
+        if (this.fontScale != -1){
+            clear();
+        }
+        this.fontScale = fontScale;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public int hitCount() {
+        return hitCount;
+    }
+
+    public int missCount() {
+        return missCount;
+    }
+
+    public int evictionCount() {
+        return evictionCount;
+    }
+
+    //估算占用的内存，单位字节，数组在创建时按maxSize分配，和当前缓存的数量无关
+    public long getMemoryFootprint() {
+        return 64 + 8L * maxSize + 3 * 4L * maxSize + 4L * table.length + 5 * 16;
+    }
+
+    //命中率
+    public float hitRate() {
+        int total = hitCount + missCount;
+        return total == 0 ? 0f : (float) hitCount / total;
+    }
+
+    //清空统计数据
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    public void clear() {
+        Arrays.fill(table,0);
+        head = -1;
+        tail = -1;
+        size = 0;
+    }
+}
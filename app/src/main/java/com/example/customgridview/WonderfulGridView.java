@@ -1,20 +1,23 @@
 package com.example.customgridview;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.TypedArray;
-import android.graphics.Color;
+import android.content.res.ColorStateList;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.StateListDrawable;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.util.SparseArray;
-import android.view.Gravity;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.widget.TextView;
 import androidx.core.content.ContextCompat;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -27,7 +30,7 @@ import java.util.List;
 public class WonderfulGridView extends SimpleCustomGridView{
 
     //不允许的颜色值，即颜色设置成这个值将不会起作用
-    protected final int forbiddenColor = -111;
+    protected final int forbiddenColor = GridStyle.UNSET_COLOR;
 
     //背景颜色
     protected int selectColor;
@@ -39,6 +42,23 @@ public class WonderfulGridView extends SimpleCustomGridView{
     //颜色选择器
     protected int colorSelector;
 
+    //选中状态切换动画，背景渐变的时长，0表示没有动画
+    protected int selectAnimDuration;
+    //选中时的缩放比例，1表示不缩放
+    protected float selectScale;
+
+    //超出最多选中数量时的处理策略 拒绝本次选中
+    public static final int OVERFLOW_REJECT = 0;
+    //超出最多选中数量时的处理策略 取消最早选中的一项
+    public static final int OVERFLOW_EVICT_OLDEST = 1;
+
+    //点击被拒绝的原因 该项被禁用
+    public static final int REJECT_DISABLED = 1;
+    //点击被拒绝的原因 已经达到最多选中数量
+    public static final int REJECT_MAX = 2;
+    //点击被拒绝的原因 已经是最少选中数量，不能再取消
+    public static final int REJECT_MIN = 3;
+
     //响应模式 0：点击模式 1：单选模式 2：多选模式
     protected int responseMode;
     //选择的位置
@@ -47,8 +67,101 @@ public class WonderfulGridView extends SimpleCustomGridView{
 
     private SelectChangeListener selectChangeListener;
 
+    //选择约束，只对用户的点击、拖动生效，代码调用setSelectItem不受限制
+    private int maxSelection;                               //多选模式下最多选中的数量，0表示不限制
+    private int overflowPolicy = OVERFLOW_REJECT;           //超出最多选中数量时的处理策略
+    private int minSelection;                               //最少选中的数量，达到后不能再取消
+    private final SparseBooleanArray disabledPositions = new SparseBooleanArray();   //被禁用的位置
+    private SelectionRejectListener selectionRejectListener;
+    //选中的先后顺序，key:位置，value:选中时的序号，用于取消最早选中的一项
+    private final SparseIntArray selectOrder = new SparseIntArray();
+    private int selectSequence;
+
+    //保存选中状态时使用的稳定id，为null时按位置保存
+    private StableIdProvider stableIdProvider;
+    //恢复状态时数据还没有加载，暂存起来等数据加载后再恢复
+    private SavedState pendingRestore;
+
+    //多选模式下是否允许长按后拖动连续选择
+    private boolean dragSelectEnabled = true;
+    //是否正在拖动选择
+    private boolean dragSelecting;
+    //拖动的起点
+    private int dragAnchor;
+    //当前拖动选择的范围[dragRangeStart,dragRangeEnd]
+    private int dragRangeStart = -1;
+    private int dragRangeEnd = -1;
+    //拖动开始前的选中状态
+    private SparseArray<Boolean> dragBaseSelection;
+
+    //合并回调选中状态的变化
+    private SelectionChangedListener selectionChangedListener;
+    //发生变化的位置及其变化前的状态
+    private final SparseBooleanArray changedOrigin = new SparseBooleanArray();
+    private boolean dispatchScheduled;
+    private final Runnable dispatchSelectionChangedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatchScheduled = false;
+            dispatchSelectionChanged();
+        }
+    };
+
+    //待处理的选中操作
+    private final PendingSelection pendingSelection = new PendingSelection();
+    //最外层批量更新开始时的选中状态
+    private SparseArray<Boolean> batchBaseSelection;
+    //队列中的操作只修改选中状态
+    private final PendingSelection.Target selectionTarget = new PendingSelection.Target() {
+        @Override
+        public void selectState(int position) {
+            if (responseMode == 1){
+                int group = getSelectionGroup(position);
+                for (int i=choosePosition.size() - 1; i>=0; i--){
+                    if (getSelectionGroup(choosePosition.keyAt(i)) == group){
+                        selectOrder.delete(choosePosition.keyAt(i));
+                        choosePosition.removeAt(i);
+                    }
+                }
+            }
+            choosePosition.put(position,true);
+            selectOrder.put(position,++selectSequence);
+        }
+
+        @Override
+        public void clearState(int position) {
+            choosePosition.remove(position);
+            selectOrder.delete(position);
+        }
+
+        @Override
+        public void selectState(String item) {
+            for (int i=0; i<children.size(); i++){
+                if (children.get(i).equals(item)){
+                    selectState(i);
+                    if (responseMode != 2)break;
+                }
+            }
+        }
+
+        @Override
+        public void clearState(String item) {
+            for (int i=0; i<children.size(); i++){
+                if (children.get(i).equals(item)){
+                    clearState(i);
+                }
+            }
+        }
+
+        @Override
+        public void clearAllState() {
+            choosePosition.clear();
+            selectOrder.clear();
+        }
+    };
+
     public WonderfulGridView(Context context) {
-        this(context,null);
+        this(context,(AttributeSet) null);
     }
 
     public WonderfulGridView(Context context, AttributeSet attrs) {
@@ -56,125 +169,131 @@ public class WonderfulGridView extends SimpleCustomGridView{
     }
 
     public WonderfulGridView(Context context, AttributeSet attrs, int defStyleAttr) {
-        super(context, attrs, defStyleAttr);
-        init(context,attrs);
+        this(context, attrs, defStyleAttr, GridStyle.obtain(context,attrs));
+    }
+
+    //在代码中创建，多个gridView可以共用同一个样式
+    public WonderfulGridView(Context context, GridStyle style) {
+        this(context, null, 0, style);
+    }
+
+    protected WonderfulGridView(Context context, AttributeSet attrs, int defStyleAttr, GridStyle style) {
+        super(context, attrs, defStyleAttr, style);
+        init(style);
     }
 
     //初始化
-    @SuppressLint("ResourceAsColor")
-    private void init(Context context, AttributeSet attrs){
+    private void init(GridStyle style){
 
         choosePosition = new SparseArray<>();
 
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.wonderfulGridViewStyle);
-
-        responseMode = typedArray.getInteger(R.styleable.wonderfulGridViewStyle_responseMode,0);
+        responseMode = style.responseMode;
 
-        selectColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_selectColor,forbiddenColor);
-        defaultColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_defaultColor,forbiddenColor);
-        colorSelector = typedArray.getResourceId(R.styleable.wonderfulGridViewStyle_colorSelector,R.drawable.color_selector);
+        selectColor = style.selectColor;
+        defaultColor = style.defaultColor;
+        colorSelector = style.colorSelector;
 
-        selectTextColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_selectTextColor, Color.BLUE);
-        defaultTextColor = typedArray.getColor(R.styleable.wonderfulGridViewStyle_defaultTextColor, Color.BLACK);
+        selectTextColor = style.selectTextColor;
+        defaultTextColor = style.defaultTextColor;
 
-        typedArray.recycle();
+        selectAnimDuration = style.selectAnimDuration;
+        selectScale = style.selectScale;
     }
 
-    /**
-     * 添加子view
-     * @param width 子view的宽
-     * @param height 子view的高
-     */
+    //子view的样式和选中、禁用状态有关，复用时状态变化了才需要重新绑定
     @Override
-    protected void addChildrenView(int width, int height, int maxLine) {
-        removeAllViews();
-        for (int i=0; i<children.size(); i++){
-            final String child = children.get(i);
+    protected Object getCellStyleKey(int position) {
+        return getStyleKey(isSelected(choosePosition,position),isItemEnabled(position));
+    }
 
-            TextView textView = new TextView(context);
-            if (maxLine >0){
-                textView.setMaxLines(maxLine);
-            }
-            textView.setLayoutParams(new ViewGroup.LayoutParams(width, height));
-
-            //如果是点击模式，直接设置选择器即可
-            if (responseMode == 0){
-                //设置背景选择器
-                StateListDrawable drawable = new StateListDrawable();
-                Drawable drawableSelect = ContextCompat.getDrawable(context,selectDrawable);
-                Drawable drawableNormal = ContextCompat.getDrawable(context,defaultDrawable);
-                drawable.addState(new int[]{android.R.attr.state_pressed},drawableSelect);//选中
-                drawable.addState(new int[]{},drawableNormal);//未选中
-                textView.setBackground(drawable);
-                //设置字体颜色选择器
-                textView.setTextColor(ContextCompat.getColorStateList(context, colorSelector));
-            }
-            //否则就是单选或多选模式，需要设置选中的颜色
-            else {
-                //设置背景drawable,
-                if (defaultDrawable != -1){
-                    textView.setBackgroundResource(defaultDrawable);
-                }
-                //设置背景颜色，优先级更高，如果都设置了则会覆盖drawable
-                if (defaultColor != forbiddenColor){
-                    textView.setBackgroundColor(defaultColor);
-                }
-                //设置字体颜色
-                if (defaultTextColor != forbiddenColor){
-                    textView.setTextColor(color(defaultTextColor));
-                }
+    //状态组合成较小的Integer，装箱时使用缓存，不会创建对象
+    private static Integer getStyleKey(boolean selected, boolean enabled){
+        return (selected ? 1 : 0) | (enabled ? 0 : 2);
+    }
 
-                //设置当前选中的背景、颜色
-                //这很重要，因为当一个View由GONE变为VISIBLE的时候会触发onMeasure方法
-                //而onMeasure会多次调用addChildrenView，这意味着childView会被重新创建
-                //如果choosePosition.get(i)==true说明之前就已经做过选择操作，因此需要设置当前childView为选中状态
-                if (choosePosition.get(i) != null && choosePosition.get(i)){
-                    //设置背景
-                    if (selectDrawable != -1){
-                        textView.setBackgroundResource(selectDrawable);
-                    }
-                    if(selectColor != forbiddenColor){
-                        textView.setBackgroundColor(selectColor);
-                    }
-                    //设置字体颜色
-                    if (selectTextColor != forbiddenColor){
-                        textView.setTextColor(color(selectTextColor));
-                    }
-                }
-            }
-            //设置padding
-            if (gridPadding != -1){
-                textView.setPadding(gridPadding,gridPadding,gridPadding,gridPadding);
-            }else {
-                textView.setPadding(leftPadding,topPadding,rightPadding,bottomPadding);
+    @Override
+    protected void bindCellStyle(View cell, int position) {
+        //如果是点击模式，直接设置选择器即可
+        if (responseMode == 0){
+            super.bindCellStyle(cell, position);
+            return;
+        }
+        //否则就是单选或多选模式，需要设置选中的颜色
+        TextView textView = (TextView) cell;
+        boolean selected = isSelected(choosePosition,position);
+        //开启动画时背景、字体颜色都使用选择器，切换选中状态时只修改view的selected状态
+        if (isSelectAnimated()){
+            Drawable background = createSelector(selectDrawable,defaultDrawable,selectColor,defaultColor);
+            if (background != null){
+                textView.setBackground(background);
             }
-            //居中显示
-            textView.setGravity(Gravity.CENTER);
-            //设置字体大小
-            if (textSize != -1){
-                textView.setTextSize(textSize);
+            ColorStateList textColor = createColorSelector(selectTextColor,defaultTextColor);
+            if (textColor != null){
+                textView.setTextColor(textColor);
             }
-            //设置字体内容
-            textView.setText(child);
-            //设置点击监听事件
-            final int finalI = i;
-            textView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    onItemClick(finalI,child);
-                }
-            });
+            applySelectState(textView,selected,false);
+            bindCellPadding(textView);
+            return;
+        }
+        applyDefaultStyle(textView);
+        //设置当前选中的背景、颜色
+        //队列中的选中操作在测量前只修改了choosePosition，需要根据它设置当前childView的选中状态
+        if (choosePosition.get(position) != null && choosePosition.get(position)){
+            applySelectStyle(textView);
+        }
+        //背景可能带有padding，重新设置一次
+        bindCellPadding(textView);
+    }
+
+    //设置选中的背景、颜色
+    private void applySelectStyle(TextView textView){
+        //设置背景
+        if (selectDrawable != -1){
+            textView.setBackgroundResource(selectDrawable);
+        }
+        if(selectColor != forbiddenColor){
+            textView.setBackgroundColor(selectColor);
+        }
+        //设置字体颜色
+        if (selectTextColor != forbiddenColor){
+            textView.setTextColor(color(selectTextColor));
+        }
+    }
 
-            addView(textView);
+    //设置默认的背景、颜色
+    private void applyDefaultStyle(TextView textView){
+        //设置背景drawable,
+        if (defaultDrawable != -1){
+            textView.setBackgroundResource(defaultDrawable);
+        }
+        //设置背景颜色，优先级更高，如果都设置了则会覆盖drawable
+        if (defaultColor != forbiddenColor){
+            textView.setBackgroundColor(defaultColor);
+        }
+        //设置字体颜色
+        if (defaultTextColor != forbiddenColor){
+            textView.setTextColor(color(defaultTextColor));
         }
     }
 
     @Override
     protected void onItemClick(int position, String content) {
+        //被禁用的项不响应点击，在修改任何状态之前判断，已经选中的禁用项仍然可以取消选中
+        if (!isItemEnabled(position) && (responseMode == 0 || !isItemSelected(position))){
+            rejectSelection(position,content,REJECT_DISABLED);
+            return;
+        }
         //如果不是点击模式，则选中状态取反
         if (responseMode !=0 ){
+            flushPendingSelection();
             //如果已经是选中状态则变为非选中状态
             if (choosePosition.get(position) != null && choosePosition.get(position)){
+                //已经是最少选中数量，不能再取消
+                if (minSelection > 0 && getSelectedCount() <= minSelection){
+                    rejectSelection(position,content,REJECT_MIN);
+                    return;
+                }
+                recordSelectionChange(position,true);
                 clearSelectItem(position);
                 if (selectChangeListener != null){
                     selectChangeListener.unSelect(position,content);
@@ -182,66 +301,352 @@ public class WonderfulGridView extends SimpleCustomGridView{
             }
             //否则变为选中状态
             else {
+                //已经达到最多选中数量
+                if (!ensureSelectionCapacity(position,content,getSelectedCount(),-1,-1))return;
+                //单选模式下同一组之前选中的项会被清除
+                if (responseMode == 1){
+                    int group = getSelectionGroup(position);
+                    for (int i=0; i<choosePosition.size(); i++){
+                        if (getSelectionGroup(choosePosition.keyAt(i)) == group){
+                            recordSelectionChange(choosePosition.keyAt(i),true);
+                        }
+                    }
+                }
+                recordSelectionChange(position,false);
                 setSelectItem(position);
                 if (selectChangeListener != null){
                     selectChangeListener.onSelect(position,content);
                 }
             }
+            //同一帧内的点击合并成一次回调
+            scheduleSelectionChangedDispatch();
         }
         super.onItemClick(position, content);
     }
 
-    //设置选中项，如果当前View有GONE和VISIBLE的操作，请使用具有二参的重载函数
-    public void setSelectItem(int position){
-        //点击模式下将不会有任何作用
-        if (responseMode == 0){
-            //TODO
-        }
-        //单选模式
-        else if (responseMode == 1){
-            //先清除所有选中的背景、颜色
-            clearAll();
-            //设置当前选中的背景、颜色
-            TextView textView = (TextView) getChildAt(position);
-            if (textView != null){
-                //设置背景
-                if (selectDrawable != -1){
-                    textView.setBackgroundResource(selectDrawable);
-                }
-                if(selectColor != forbiddenColor){
-                    textView.setBackgroundColor(selectColor);
-                }
-                //设置字体颜色
-                if (selectTextColor != forbiddenColor){
-                    textView.setTextColor(color(selectTextColor));
-                }
+    private void rejectSelection(int position, String content, int reason){
+        if (selectionRejectListener != null){
+            selectionRejectListener.onReject(position,content,reason);
+        }
+    }
+
+    //选中的数量
+    public int getSelectedCount(){
+        flushPendingSelection();
+        int count = 0;
+        for (int i=0; i<choosePosition.size(); i++){
+            if (choosePosition.valueAt(i))count++;
+        }
+        return count;
+    }
+
+    /**
+     * 多选模式下选中position之前检查最多选中数量，点击和拖动选择使用同一个检查
+     * 已经达到最多数量时按overflowPolicy取消最早选中的一项，或者拒绝并通知
+     * @param selectedCount 当前选中的数量
+     * @param keepStart 不能被取消的范围的起点，例如拖动选择的范围，没有时为-1
+     * @param keepEnd 不能被取消的范围的终点
+     * @return 是否可以选中
+     */
+    private boolean ensureSelectionCapacity(int position, String content, int selectedCount, int keepStart, int keepEnd){
+        if (responseMode != 2 || maxSelection <= 0 || selectedCount < maxSelection)return true;
+        int oldest = overflowPolicy == OVERFLOW_EVICT_OLDEST ? getOldestSelected(keepStart,keepEnd) : -1;
+        if (oldest < 0){
+            rejectSelection(position,content,REJECT_MAX);
+            return false;
+        }
+        //只取消最早选中的一项，其他子view不受影响
+        recordSelectionChange(oldest,true);
+        clearSelectItem(oldest);
+        if (selectChangeListener != null){
+            selectChangeListener.unSelect(oldest,children.get(oldest));
+        }
+        return true;
+    }
+
+    //[keepStart,keepEnd]之外最早选中的位置，没有时返回-1，没有记录顺序的(例如恢复的状态)视为最早
+    private int getOldestSelected(int keepStart, int keepEnd){
+        int oldest = -1;
+        int oldestOrder = Integer.MAX_VALUE;
+        for (int i=0; i<choosePosition.size(); i++){
+            if (!choosePosition.valueAt(i))continue;
+            int position = choosePosition.keyAt(i);
+            if (position >= keepStart && position <= keepEnd)continue;
+            int order = selectOrder.get(position,0);
+            if (order < oldestOrder){
+                oldestOrder = order;
+                oldest = position;
             }
         }
-        //多选模式
-        else if (responseMode == 2){
-            //设置当前选中的背景、颜色
-            TextView textView = (TextView) getChildAt(position);
-            if (textView != null){
-                //设置背景
-                if (selectDrawable != -1){
-                    textView.setBackgroundResource(selectDrawable);
+        return oldest;
+    }
+
+    //多选模式下长按开始拖动选择，长按的这一项作为范围的起点
+    @Override
+    protected boolean onItemLongClick(int position, String content) {
+        if (super.onItemLongClick(position, content))return true;
+        if (responseMode != 2 || !dragSelectEnabled)return false;
+        flushPendingSelection();
+        dragSelecting = true;
+        dragAnchor = position;
+        dragRangeStart = -1;
+        dragRangeEnd = -1;
+        //拖动开始前的选中状态，拖动范围之外的位置恢复成这个状态
+        dragBaseSelection = choosePosition.clone();
+        //拖动过程中不允许父容器拦截，例如ScrollView的滑动
+        ViewParent parent = getParent();
+        if (parent != null){
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+        updateDragRange(position);
+        return true;
+    }
+
+    //拖动选择时由gridView自己处理后续事件，按下的子view会收到CANCEL
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        switch (ev.getActionMasked()){
+            case MotionEvent.ACTION_DOWN:
+                //上一次拖动没有正常结束，新的手势不能接着拖动
+                if (dragSelecting){
+                    endDragSelection();
                 }
-                if(selectColor != forbiddenColor){
-                    textView.setBackgroundColor(selectColor);
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                //长按后没有移动就抬起时，拦截的第一个事件就是UP，onTouchEvent收不到
+                if (dragSelecting){
+                    endDragSelection();
+                    return true;
                 }
-                //设置字体颜色
-                if (selectTextColor != forbiddenColor){
-                    textView.setTextColor(color(selectTextColor));
+                break;
+            default:
+                break;
+        }
+        return dragSelecting || super.onInterceptTouchEvent(ev);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!dragSelecting)return super.onTouchEvent(event);
+        switch (event.getActionMasked()){
+            case MotionEvent.ACTION_MOVE:
+                //根据坐标找到最近的子view，不依赖子view的触摸事件
+                int position = getNearestPositionAt((int) event.getX(),(int) event.getY());
+                if (position >= 0){
+                    updateDragRange(position);
                 }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                endDragSelection();
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    //结束拖动选择，整个拖动手势只回调一次
+    private void endDragSelection(){
+        dragSelecting = false;
+        dragBaseSelection = null;
+        dispatchSelectionChanged();
+    }
+
+    /**
+     * 拖动范围变为起点到position之间的所有位置，范围内的全部选中，移出范围的位置恢复成拖动开始前的状态
+     * 每次都按整个范围重新计算，范围缩小释放出数量后，之前因为数量限制没有选中的位置也会选中
+     * 达到最多选中数量时和点击一样处理：取消范围之外最早选中的一项，或者拒绝并通知，被取消的项在拖动结束前不会恢复
+     */
+    private void updateDragRange(int position){
+        int start = Math.min(dragAnchor,position);
+        int end = Math.max(dragAnchor,position);
+        if (start == dragRangeStart && end == dragRangeEnd)return;
+        //移出范围的位置
+        if (dragRangeStart >= 0){
+            for (int i=dragRangeStart; i<=dragRangeEnd; i++){
+                if (i >= start && i <= end)continue;
+                if (!isSelected(dragBaseSelection,i) && isSelected(choosePosition,i)){
+                    recordSelectionChange(i,true);
+                    clearSelectItem(i);
+                }
+            }
+        }
+        dragRangeStart = start;
+        dragRangeEnd = end;
+        //范围内还没有选中的位置，从起点向外依次选中
+        int selected = getSelectedCount();
+        for (int k=0; k<=end-start; k++){
+            int i = position >= dragAnchor ? start + k : end - k;
+            if (isSelected(choosePosition,i) || !isItemEnabled(i) || !isItemVisible(i))continue;
+            if (!ensureSelectionCapacity(i,children.get(i),selected,start,end))break;
+            if (maxSelection <= 0 || selected < maxSelection){
+                selected++;
+            }
+            recordSelectionChange(i,false);
+            setSelectItem(i);
+        }
+    }
+
+    //记录选中状态变化之前的状态，同一位置只记录第一次
+    private void recordSelectionChange(int position, boolean wasSelected){
+        if (selectionChangedListener == null)return;
+        if (changedOrigin.indexOfKey(position) < 0){
+            changedOrigin.put(position,wasSelected);
+        }
+    }
+
+    private void scheduleSelectionChangedDispatch(){
+        if (selectionChangedListener == null || dispatchScheduled || changedOrigin.size() == 0)return;
+        dispatchScheduled = true;
+        postOnAnimation(dispatchSelectionChangedRunnable);
+    }
+
+    //合并后回调选中状态的变化，变化后又恢复的位置不会回调
+    private void dispatchSelectionChanged(){
+        if (dispatchScheduled){
+            dispatchScheduled = false;
+            removeCallbacks(dispatchSelectionChangedRunnable);
+        }
+        if (selectionChangedListener == null || changedOrigin.size() == 0)return;
+        int size = changedOrigin.size();
+        int[] added = new int[size];
+        int[] removed = new int[size];
+        int addedCount = 0;
+        int removedCount = 0;
+        for (int i=0; i<size; i++){
+            int position = changedOrigin.keyAt(i);
+            boolean was = changedOrigin.valueAt(i);
+            boolean now = isSelected(choosePosition,position);
+            if (now && !was){
+                added[addedCount++] = position;
+            }else if (!now && was){
+                removed[removedCount++] = position;
             }
         }
+        changedOrigin.clear();
+        if (addedCount == 0 && removedCount == 0)return;
+        selectionChangedListener.onSelectionChanged(Arrays.copyOf(added,addedCount),Arrays.copyOf(removed,removedCount));
+    }
+
+    //多选模式下是否允许长按后拖动连续选择，默认允许
+    public void setDragSelectEnabled(boolean dragSelectEnabled) {
+        this.dragSelectEnabled = dragSelectEnabled;
+    }
+
+    /**
+     * 设置子view的选中/未选中样式
+     * @param cell 子view
+     * @param selected 是否选中
+     */
+    protected void bindSelectStyle(View cell, boolean selected){
+        if (isSelectAnimated()){
+            applySelectState(cell,selected,true);
+            return;
+        }
+        if (selected){
+            applySelectStyle((TextView) cell);
+        }else {
+            applyDefaultStyle((TextView) cell);
+        }
+    }
+
+    //设置子view的选中样式，点击模式下不设置，同时记录子view当前的样式状态
+    private void updateSelectStyle(int position, boolean selected){
+        if (responseMode == 0)return;
+        View cell = getChildAt(position);
+        if (cell == null)return;
+        bindSelectStyle(cell,selected);
+        cell.setTag(R.id.grid_cell_style_bound,getStyleKey(selected,isItemEnabled(position)));
+    }
+
+    /**
+     * 即将重新测量时子view会重新绑定，选中操作先放入队列，在测量前合并处理
+     * 这样不需要post延迟执行，当View由GONE变为VISIBLE时也是安全的
+     */
+    protected boolean shouldQueueSelection(){
+        return isLayoutRequested() || isInBatch();
+    }
+
+    //最外层批量更新开始时记录选中状态，批量更新期间读取选中状态会提前处理队列，提交时和它比较才能找到所有变化的子view
+    @Override
+    public void beginBatch() {
+        if (!isInBatch()){
+            batchBaseSelection = choosePosition.clone();
+        }
+        super.beginBatch();
+    }
+
+    //批量更新中没有请求重新测量时，队列中的选中操作需要立即处理，只重新设置状态发生变化的子view
+    @Override
+    protected void onBatchCommitted(boolean refreshed) {
+        super.onBatchCommitted(refreshed);
+        SparseArray<Boolean> old = batchBaseSelection;
+        batchBaseSelection = null;
+        if (refreshed || isLayoutRequested() || old == null)return;
+        flushPendingSelection();
+        //之前选中的位置
+        for (int i=0; i<old.size(); i++){
+            int position = old.keyAt(i);
+            if (isSelected(old,position) && !isSelected(choosePosition,position)){
+                updateSelectStyle(position,false);
+                notifyItemAccessibilityChanged(position);
+            }
+        }
+        //现在选中的位置
+        for (int i=0; i<choosePosition.size(); i++){
+            int position = choosePosition.keyAt(i);
+            if (isSelected(choosePosition,position) && !isSelected(old,position)){
+                updateSelectStyle(position,true);
+                notifyItemAccessibilityChanged(position);
+            }
+        }
+    }
+
+    private static boolean isSelected(SparseArray<Boolean> positions, int position){
+        Boolean selected = positions.get(position);
+        return selected != null && selected;
+    }
+
+    //测量前合并处理待处理的选中操作，只修改状态，子view创建时会根据状态设置样式
+    @Override
+    protected void onPrepareBind() {
+        super.onPrepareBind();
+        flushPendingSelection();
+    }
+
+    //把队列中的选中操作应用到选中状态上
+    private void flushPendingSelection(){
+        if (pendingSelection.isEmpty())return;
+        pendingSelection.apply(selectionTarget);
+    }
+
+    //设置选中项
+    public void setSelectItem(int position){
+        if (shouldQueueSelection()){
+            pendingSelection.add(PendingSelection.SELECT_POSITION,position,responseMode == 1);
+            return;
+        }
+        //单选模式先清除同一组的其他选中项
+        if (responseMode == 1){
+            clearGroup(position);
+        }
+        //设置当前选中的背景、颜色
+        updateSelectStyle(position,true);
         //保存选中的位置
         choosePosition.put(position,true);
+        selectOrder.put(position,++selectSequence);
+        notifyItemAccessibilityChanged(position);
     }
 
     //设置选中项,item:item的内容，
     public void setSelectItem(String item){
         if (item == null)return;
+        if (shouldQueueSelection()){
+            pendingSelection.add(PendingSelection.SELECT_ITEM,item);
+            return;
+        }
         for (int i=0; i<children.size(); i++){
             if (children.get(i).equals(item)){
                 setSelectItem(i);
@@ -251,57 +656,43 @@ public class WonderfulGridView extends SimpleCustomGridView{
         }
     }
 
-    //设置选中项,当有GONE和VISIBLE的操作时此方法更加安全
-    public void setSelectItem(final int position, boolean delay){
-        if(delay){
-            new Handler(Looper.getMainLooper()).post(new Runnable() {
-                @Override
-                public void run() {
-                    setSelectItem(position);
-                }
-            });
-        }else {
-            setSelectItem(position);
-        }
+    /**
+     * 设置选中项
+     * @deprecated 选中操作在即将重新测量时会自动放入队列，不再需要延迟，请使用{@link #setSelectItem(int)}
+     */
+    @Deprecated
+    public void setSelectItem(int position, boolean delay){
+        setSelectItem(position);
     }
 
-    //设置选中项,item:item的内容,当有GONE和VISIBLE的操作时此方法更加安全
-    public void setSelectItem(final String item, boolean delay){
-        if(delay){
-            new Handler(Looper.getMainLooper()).post(new Runnable() {
-                @Override
-                public void run() {
-                    setSelectItem(item);
-                }
-            });
-        }else {
-            setSelectItem(item);
-        }
+    /**
+     * 设置选中项,item:item的内容
+     * @deprecated 选中操作在即将重新测量时会自动放入队列，不再需要延迟，请使用{@link #setSelectItem(String)}
+     */
+    @Deprecated
+    public void setSelectItem(String item, boolean delay){
+        setSelectItem(item);
     }
 
-    //清除选中项，如果当前View有GONE和VISIBLE的操作，请使用具有二参的重载函数
+    //清除选中项
     public void clearSelectItem(int position){
-        TextView textView;
-        //清除选中的背景、颜色
-        textView = (TextView) getChildAt(position);
-        if (textView != null){
-            //设置背景
-            if (defaultDrawable != -1){
-                textView.setBackgroundResource(defaultDrawable);
-            }
-            if(defaultColor != forbiddenColor){
-                textView.setBackgroundColor(defaultColor);
-            }
-            //设置字体颜色
-            if (defaultTextColor != forbiddenColor){
-                textView.setTextColor(color(defaultTextColor));
-            }
+        if (shouldQueueSelection()){
+            pendingSelection.add(PendingSelection.CLEAR_POSITION,position);
+            return;
         }
+        //清除选中的背景、颜色
+        updateSelectStyle(position,false);
         choosePosition.remove(position);
+        selectOrder.delete(position);
+        notifyItemAccessibilityChanged(position);
     }
 
     //设置选中项,item:item的内容
     public void clearSelectItem(String item){
+        if (shouldQueueSelection()){
+            pendingSelection.add(PendingSelection.CLEAR_ITEM,item);
+            return;
+        }
         for (int i=0; i<children.size(); i++){
             if (children.get(i).equals(item)){
                 clearSelectItem(i);
@@ -309,66 +700,263 @@ public class WonderfulGridView extends SimpleCustomGridView{
         }
     }
 
-    //设置选中项,当有GONE和VISIBLE的操作时此方法更加安全
-    public void clearSelectItem(final int position, boolean delay){
-        if(delay){
-            new Handler(Looper.getMainLooper()).post(new Runnable() {
-                @Override
-                public void run() {
-                    clearSelectItem(position);
-                }
-            });
-        }else {
-            clearSelectItem(position);
+    /**
+     * 清除选中项
+     * @deprecated 选中操作在即将重新测量时会自动放入队列，不再需要延迟，请使用{@link #clearSelectItem(int)}
+     */
+    @Deprecated
+    public void clearSelectItem(int position, boolean delay){
+        clearSelectItem(position);
+    }
+
+    /**
+     * 清除选中项,item:item的内容
+     * @deprecated 选中操作在即将重新测量时会自动放入队列，不再需要延迟，请使用{@link #clearSelectItem(String)}
+     */
+    @Deprecated
+    public void clearSelectItem(String item, boolean delay){
+        clearSelectItem(item);
+    }
+
+    //清除和position同一组的其他选中项
+    private void clearGroup(int position){
+        int group = getSelectionGroup(position);
+        for (int i=choosePosition.size() - 1; i>=0; i--){
+            int key = choosePosition.keyAt(i);
+            if (key != position && getSelectionGroup(key) == group){
+                clearSelectItem(key);
+            }
         }
     }
 
-    //设置选中项,item:item的内容,当有GONE和VISIBLE的操作时此方法更加安全
-    public void clearSelectItem(final String item, boolean delay){
-        if(delay){
-            new Handler(Looper.getMainLooper()).post(new Runnable() {
-                @Override
-                public void run() {
-                    clearSelectItem(item);
-                }
-            });
+    /**
+     * 选择的分组，单选模式下每一组各自只能选中一项，默认所有项都是同一组
+     * 子类可以重写，例如按分组的标题划分
+     */
+    protected int getSelectionGroup(int position){
+        return 0;
+    }
+
+    //清除所有选中状态，只需要处理已经选中的位置
+    public void clearAll(){
+        if (shouldQueueSelection()){
+            pendingSelection.add(PendingSelection.CLEAR_ALL,-1);
+            return;
+        }
+        for (int i=choosePosition.size() - 1; i>=0; i--){
+            clearSelectItem(choosePosition.keyAt(i));
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Parcelable superState = super.onSaveInstanceState();
+        SavedState state = new SavedState(superState);
+        flushPendingSelection();
+        //数据还没有加载时保存的是待恢复的状态，原样保存下去
+        if (pendingRestore != null && children.isEmpty()){
+            state.copyFrom(pendingRestore);
+            return state;
+        }
+        int size = choosePosition.size();
+        int[] positions = new int[size];
+        int count = 0;
+        for (int i=0; i<size; i++){
+            Boolean selected = choosePosition.valueAt(i);
+            if (selected != null && selected){
+                //SparseArray的key本身就是有序的
+                positions[count++] = choosePosition.keyAt(i);
+            }
+        }
+        if (count < size){
+            positions = Arrays.copyOf(positions,count);
+        }
+        if (stableIdProvider != null){
+            long[] ids = new long[count];
+            for (int i=0; i<count; i++){
+                ids[i] = stableIdProvider.getItemId(positions[i],children.get(positions[i]));
+            }
+            Arrays.sort(ids);
+            state.stableIds = ids;
         }else {
-            clearSelectItem(item);
+            state.setPositions(positions,children.size());
         }
+        return state;
     }
 
-    //清除所有选中状态
-    public void clearAll(){
-        for (int i=0; i<children.size(); i++){
-            clearSelectItem(i);
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)){
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        //数据还没有加载，等加载后再恢复
+        if (children.isEmpty()){
+            pendingRestore = savedState;
+            return;
+        }
+        restoreSelection(savedState);
+    }
+
+    //数据加载后恢复暂存的选中状态
+    protected void applyPendingRestore(){
+        if (pendingRestore == null || children.isEmpty())return;
+        SavedState savedState = pendingRestore;
+        pendingRestore = null;
+        restoreSelection(savedState);
+    }
+
+    /**
+     * 一次性恢复选中状态，不需要post也不需要重新测量
+     * 还没有创建子view时只需要恢复choosePosition，创建子view时会根据它设置样式
+     * 已经创建了子view则只重新设置状态发生变化的子view
+     */
+    private void restoreSelection(SavedState savedState){
+        //恢复的状态优先于恢复之前的选中操作
+        pendingSelection.clear();
+        SparseArray<Boolean> old = choosePosition;
+        choosePosition = new SparseArray<>();
+        int size = children.size();
+        if (savedState.stableIds != null){
+            if (stableIdProvider != null){
+                for (int i=0; i<size; i++){
+                    long id = stableIdProvider.getItemId(i,children.get(i));
+                    if (Arrays.binarySearch(savedState.stableIds,id) >= 0){
+                        choosePosition.put(i,true);
+                        //单选模式只恢复第一个
+                        if (responseMode == 1)break;
+                    }
+                }
+            }
+        }else {
+            for (int i=0; i<size; i++){
+                if (savedState.isSelected(i)){
+                    choosePosition.put(i,true);
+                    if (responseMode == 1)break;
+                }
+            }
+        }
+        if (getChildCount() != size)return;
+        for (int i=0; i<size; i++){
+            boolean wasSelected = old.get(i) != null && old.get(i);
+            boolean selected = choosePosition.get(i) != null && choosePosition.get(i);
+            if (wasSelected != selected){
+                applyCellStyle(getChildAt(i),i);
+            }
         }
     }
 
     //移除所有view，注意他和clearAll()的区别
     //clearAll()仅仅是清除状态，并没有移除里面的view
     public void removeAll(){
+        prepareItemAnimation(Collections.<String>emptyList());
         this.children.clear();
-        this.choosePosition.clear();
-        requestLayout();
+        onDataChanged();
+        resetSelection();
+        requestRefresh();
     }
 
 
+    @Override
+    public void addChildrenView(List<String> children) {
+        super.addChildrenView(children);
+        applyPendingRestore();
+    }
+
+    //追加的位置在已有位置之后，选中状态不需要迁移
+    @Override
+    public void appendItems(List<String> items) {
+        super.appendItems(items);
+        applyPendingRestore();
+    }
+
+    //后台提交的数据发布时，按差异把选中状态迁移到新的位置上，差异无效时和refresh一样清除
+    @Override
+    protected void onListSubmitted(List<String> list, List<String> extra, GridDiff diff) {
+        flushPendingSelection();
+        SparseArray<Boolean> old = choosePosition;
+        super.onListSubmitted(list, extra, diff);
+        if (diff == null){
+            resetSelection();
+        }else {
+            choosePosition = new SparseArray<>();
+            for (int i=0; i<old.size(); i++){
+                int position = diff.getNewPosition(old.keyAt(i));
+                if (position >= 0 && isSelected(old,old.keyAt(i))){
+                    choosePosition.put(position,true);
+                }
+            }
+            //选中顺序和禁用状态跟着item一起迁移
+            SparseIntArray oldOrder = selectOrder.clone();
+            selectOrder.clear();
+            for (int i=0; i<oldOrder.size(); i++){
+                int position = diff.getNewPosition(oldOrder.keyAt(i));
+                if (position >= 0){
+                    selectOrder.put(position,oldOrder.valueAt(i));
+                }
+            }
+            SparseBooleanArray oldDisabled = disabledPositions.clone();
+            disabledPositions.clear();
+            for (int i=0; i<oldDisabled.size(); i++){
+                int position = diff.getNewPosition(oldDisabled.keyAt(i));
+                if (position >= 0){
+                    disabledPositions.put(position,true);
+                }
+            }
+            changedOrigin.clear();
+        }
+        applyPendingRestore();
+    }
+
     //重写刷新方法，选中的位置也要清除
     @Override
     public void refresh(List<String> children) {
         if (children == null)return;
+        prepareItemAnimation(children);
         this.children.clear();
         this.children.addAll(children);
-        this.choosePosition.clear();
-        requestLayout();
+        onDataChanged();
+        resetSelection();
+        applyPendingRestore();
+        requestRefresh();
+    }
+
+    @Override
+    public boolean isItemSelected(int position) {
+        flushPendingSelection();
+        return isSelected(choosePosition,position);
+    }
+
+    @Override
+    protected int getSelectionMode() {
+        return responseMode;
+    }
+
+    //清除选中状态和待处理的选中操作，数据整体替换时使用
+    protected void resetSelection(){
+        choosePosition.clear();
+        pendingSelection.clear();
+        //数据已经变了，之前记录的位置没有意义
+        changedOrigin.clear();
+        selectOrder.clear();
+        disabledPositions.clear();
+        dragSelecting = false;
+        dragBaseSelection = null;
     }
 
     //设置响应模式
     public void setResponseMode(int responseMode) {
+        if (this.responseMode == responseMode)return;
         this.responseMode = responseMode;
+        //样式和响应模式相关，需要重新绑定
+        invalidateCellStyles();
+        requestRefresh();
     }
 
     public SparseArray<Boolean> getChoosePosition() {
+        flushPendingSelection();
         return choosePosition;
     }
 
@@ -376,12 +964,269 @@ public class WonderfulGridView extends SimpleCustomGridView{
         return color;
     }
 
+    //是否开启了选中状态切换动画
+    protected boolean isSelectAnimated(){
+        return responseMode != 0 && (selectAnimDuration > 0 || selectScale != 1f);
+    }
+
+    /**
+     * 设置选中状态切换动画，背景由drawable自己渐变，缩放使用ViewPropertyAnimator，
+     * 都在RenderThread上执行，不需要每一帧重新测量、摆放
+     * @param duration 背景渐变、缩放的时长，单位毫秒，0表示没有动画
+     * @param scale 选中时的缩放比例，1表示不缩放
+     */
+    public void setSelectAnimation(int duration, float scale){
+        if (duration < 0 || scale <= 0){
+            throw new IllegalArgumentException("duration不能小于0，scale必须大于0！！！");
+        }
+        if (selectAnimDuration == duration && selectScale == scale)return;
+        selectAnimDuration = duration;
+        selectScale = scale;
+        invalidateCellStyles();
+        requestRefresh();
+    }
+
+    /**
+     * 创建选中/未选中的背景选择器，颜色优先级比drawable高，和不开启动画时一致
+     * @return 两种状态都没有设置时返回null
+     */
+    protected Drawable createSelector(int selectRes, int defaultRes, int selectColor, int defaultColor){
+        Drawable select = selectColor != forbiddenColor ? new ColorDrawable(selectColor)
+                : selectRes != -1 ? ContextCompat.getDrawable(context,selectRes) : null;
+        Drawable normal = defaultColor != forbiddenColor ? new ColorDrawable(defaultColor)
+                : defaultRes != -1 ? ContextCompat.getDrawable(context,defaultRes) : null;
+        if (select == null && normal == null)return null;
+        StateListDrawable drawable = new StateListDrawable();
+        //drawable自己完成两种状态之间的渐变
+        drawable.setEnterFadeDuration(selectAnimDuration);
+        drawable.setExitFadeDuration(selectAnimDuration);
+        if (select != null){
+            drawable.addState(new int[]{android.R.attr.state_selected},select);
+        }
+        if (normal != null){
+            drawable.addState(new int[]{},normal);
+        }
+        return drawable;
+    }
+
+    //创建选中/未选中的字体颜色选择器，两种都没有设置时返回null
+    protected ColorStateList createColorSelector(int selectColor, int defaultColor){
+        if (selectColor == forbiddenColor && defaultColor == forbiddenColor)return null;
+        if (selectColor == forbiddenColor){
+            selectColor = defaultColor;
+        }
+        if (defaultColor == forbiddenColor){
+            defaultColor = selectColor;
+        }
+        return new ColorStateList(new int[][]{{android.R.attr.state_selected},{}},new int[]{selectColor,defaultColor});
+    }
+
+    /**
+     * 修改子view的selected状态，背景选择器根据状态渐变，缩放使用属性动画
+     * @param animate 为false时直接跳到最终状态，例如子view刚绑定时
+     */
+    protected void applySelectState(View cell, boolean selected, boolean animate){
+        cell.setSelected(selected);
+        float scale = selected ? selectScale : 1f;
+        if (!animate){
+            cell.jumpDrawablesToCurrentState();
+            cell.animate().cancel();
+            cell.setScaleX(scale);
+            cell.setScaleY(scale);
+            return;
+        }
+        if (cell.getScaleX() != scale || cell.getScaleY() != scale){
+            cell.animate().scaleX(scale).scaleY(scale).setDuration(selectAnimDuration);
+        }
+    }
+
+    /**
+     * 设置稳定id，保存状态时按id保存选中项，数据顺序发生变化后依然可以正确恢复
+     * 不设置时按位置保存
+     */
+    public void setStableIdProvider(StableIdProvider stableIdProvider) {
+        this.stableIdProvider = stableIdProvider;
+    }
+
+    public interface StableIdProvider{
+        public long getItemId(int position, String content);
+    }
+
     public interface SelectChangeListener{
         public void onSelect(int position, String content);
         public void unSelect(int position, String content);
     }
 
+    /**
+     * 设置多选模式下最多选中的数量
+     * @param maxSelection 最多选中的数量，0表示不限制
+     * @param overflowPolicy 超出时的处理策略 {@link #OVERFLOW_REJECT} 或 {@link #OVERFLOW_EVICT_OLDEST}
+     */
+    public void setMaxSelection(int maxSelection, int overflowPolicy) {
+        if (maxSelection < 0){
+            throw new IllegalArgumentException("最多选中数量不能小于0！！！");
+        }
+        if (overflowPolicy != OVERFLOW_REJECT && overflowPolicy != OVERFLOW_EVICT_OLDEST){
+            throw new IllegalArgumentException("不支持的处理策略：" + overflowPolicy + "！！！");
+        }
+        this.maxSelection = maxSelection;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public int getMaxSelection() {
+        return maxSelection;
+    }
+
+    //设置最少选中的数量，选中数量达到后点击不能再取消，例如1表示至少保留一项
+    public void setMinSelection(int minSelection) {
+        if (minSelection < 0){
+            throw new IllegalArgumentException("最少选中数量不能小于0！！！");
+        }
+        this.minSelection = minSelection;
+    }
+
+    public int getMinSelection() {
+        return minSelection;
+    }
+
+    /**
+     * 设置某一项是否可用，不可用的项半透明显示，点击、拖动都不会被选中
+     * 禁用已经选中的项不会改变选中状态，用户仍然可以点击取消选中，取消后不能再选中
+     * 数据整体替换时会清除
+     */
+    public void setItemEnabled(int position, boolean enabled) {
+        if (isItemEnabled(position) == enabled)return;
+        if (enabled){
+            disabledPositions.delete(position);
+        }else {
+            disabledPositions.put(position,true);
+        }
+        //已经绑定过样式的子view立即更新，还没有绑定的在绑定时根据状态设置
+        View cell = getChildAt(position);
+        if (cell != null && cell.getTag(R.id.grid_cell_style_bound) != null){
+            applyCellStyle(cell,position);
+        }
+        notifyItemAccessibilityChanged(position);
+    }
+
+    @Override
+    public boolean isItemEnabled(int position) {
+        return !disabledPositions.get(position,false);
+    }
+
+    //点击由于选择约束被拒绝
+    public interface SelectionRejectListener{
+        public void onReject(int position, String content, int reason);
+    }
+
+    public void setSelectionRejectListener(SelectionRejectListener selectionRejectListener) {
+        this.selectionRejectListener = selectionRejectListener;
+    }
+
+    /**
+     * 用户操作引起的选中状态变化，一个拖动手势或者同一帧内的多次点击只回调一次
+     * @param added 新选中的位置
+     * @param removed 取消选中的位置
+     */
+    public interface SelectionChangedListener{
+        public void onSelectionChanged(int[] added, int[] removed);
+    }
+
+    public void setSelectionChangedListener(SelectionChangedListener selectionChangedListener) {
+        this.selectionChangedListener = selectionChangedListener;
+        if (selectionChangedListener == null){
+            changedOrigin.clear();
+        }
+    }
+
     public void setSelectChangeListener(SelectChangeListener selectChangeListener) {
         this.selectChangeListener = selectChangeListener;
     }
+
+    /**
+     * 保存的选中状态，按位置保存时在有序int数组和位图中选择占用更小的一种
+     * 设置了稳定id时保存有序的id数组
+     */
+    static class SavedState extends BaseSavedState{
+
+        private int[] positions;        //有序的选中位置
+        private long[] bitmap;          //选中位置的位图
+        private long[] stableIds;       //有序的稳定id
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            int type = in.readInt();
+            if (type == 1){
+                positions = in.createIntArray();
+            }else if (type == 2){
+                bitmap = in.createLongArray();
+            }else if (type == 3){
+                stableIds = in.createLongArray();
+            }
+        }
+
+        /**
+         * @param positions 有序的选中位置
+         * @param size 数据的数量
+         */
+        void setPositions(int[] positions, int size){
+            //位图需要的long数量
+            int words = (size + 63) >>> 6;
+            if (words * 8 < positions.length * 4){
+                bitmap = new long[words];
+                for (int position : positions){
+                    bitmap[position >>> 6] |= 1L << position;
+                }
+            }else {
+                this.positions = positions;
+            }
+        }
+
+        boolean isSelected(int position){
+            if (bitmap != null){
+                int word = position >>> 6;
+                return word < bitmap.length && (bitmap[word] & (1L << position)) != 0;
+            }
+            return positions != null && Arrays.binarySearch(positions,position) >= 0;
+        }
+
+        void copyFrom(SavedState other){
+            positions = other.positions;
+            bitmap = other.bitmap;
+            stableIds = other.stableIds;
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            if (positions != null){
+                out.writeInt(1);
+                out.writeIntArray(positions);
+            }else if (bitmap != null){
+                out.writeInt(2);
+                out.writeLongArray(bitmap);
+            }else if (stableIds != null){
+                out.writeInt(3);
+                out.writeLongArray(stableIds);
+            }else {
+                out.writeInt(0);
+            }
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
 }
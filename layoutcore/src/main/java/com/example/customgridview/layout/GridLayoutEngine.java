@@ -0,0 +1,209 @@
+package com.example.customgridview.layout;
+
+/**
+ *  @Author wonderful
+ *  @Date 2020-11-10
+ *  @Version 1.0
+ *  @Description 网格布局的几何计算，不依赖Android
+ */
+public final class GridLayoutEngine {
+
+    private int column = 1;
+    private int columnGap;          //列之间的间隔，对应gapVertical
+    private int rowGap;             //行之间的间隔，对应gapHorizontal
+    private int paddingLeft;
+    private int paddingTop;
+    private int paddingRight;
+    private int paddingBottom;
+
+    public GridLayoutEngine(int column) {
+        setColumn(column);
+    }
+
+    public void setColumn(int column) {
+        if (column <= 0){
+            throw new IllegalArgumentException("column必须大于0！！！");
+        }
+        this.column = column;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @param columnGap 列之间的间隔
+     * @param rowGap 行之间的间隔
+     */
+    public void setGap(int columnGap, int rowGap) {
+        this.columnGap = columnGap;
+        this.rowGap = rowGap;
+    }
+
+    public int getColumnGap() {
+        return columnGap;
+    }
+
+    public int getRowGap() {
+        return rowGap;
+    }
+
+    public void setPadding(int left, int top, int right, int bottom) {
+        paddingLeft = left;
+        paddingTop = top;
+        paddingRight = right;
+        paddingBottom = bottom;
+    }
+
+    //宽为match_parent或指定大小时每列的宽度
+    public int getColumnWidth(int width) {
+        return (width - paddingLeft - paddingRight - (column - 1) * columnGap) / column;
+    }
+
+    //宽为wrap_content时每列的最大宽度，例如可用宽度为屏幕宽度
+    public int getMaxColumnWidth(int availableWidth) {
+        return (availableWidth - paddingLeft - paddingRight) / column;
+    }
+
+    public int getRowCount(int count) {
+        return (count + column - 1) / column;
+    }
+
+    //一行中第一个格子
+    public int getRowStart(int row) {
+        return row * column;
+    }
+
+    //一行中最后一个格子的下一个
+    public int getRowEnd(int row, int count) {
+        return Math.min(getRowStart(row) + column,count);
+    }
+
+    public int getRowOfSlot(int slot) {
+        return slot / column;
+    }
+
+    public int getColumnOfSlot(int slot) {
+        return slot % column;
+    }
+
+    //一列的左边
+    public int getCellLeft(int col, int cellWidth) {
+        return paddingLeft + col * (cellWidth + columnGap);
+    }
+
+    //一行的顶部
+    public int getRowTop(int row, int cellHeight) {
+        return paddingTop + row * (cellHeight + rowGap);
+    }
+
+    /**
+     * 高度
+     * @param rows 行数
+     * @param cellHeight 格子的高
+     * @param extraHeight 除了所有行之外额外需要的高度，例如分组的标题
+     */
+    public int getHeight(int rows, int cellHeight, int extraHeight) {
+        //没有行时也没有行间隔
+        return cellHeight * rows + Math.max(0,rows - 1) * rowGap + extraHeight + paddingTop + paddingBottom;
+    }
+
+    //宽为wrap_content时的宽度，格子数量小于列数时按格子数量计算，没有格子时为0
+    public int getWrapWidth(int count, int cellWidth) {
+        if (count == 0)return 0;
+        int columns = Math.min(count,column);
+        return cellWidth * columns + (columns - 1) * columnGap + paddingLeft + paddingRight;
+    }
+
+    //x坐标所在的列，落在间隔、padding上或者超出范围时返回-1
+    public int getColumnAt(int x, int cellWidth) {
+        int columnWidth = cellWidth + columnGap;
+        int dx = x - paddingLeft;
+        if (columnWidth <= 0 || dx < 0 || dx % columnWidth >= cellWidth)return -1;
+        int col = dx / columnWidth;
+        return col < column ? col : -1;
+    }
+
+    //x坐标最近的列
+    public int getNearestColumnAt(int x, int cellWidth) {
+        int columnWidth = cellWidth + columnGap;
+        int col = columnWidth <= 0 ? 0 : (x - paddingLeft) / columnWidth;
+        return Math.max(0,Math.min(col,column - 1));
+    }
+
+    //y坐标所在的行，超出范围时取最近的行，在行间隔上时取上面一行
+    public int getRowAt(int y, int cellHeight, int count) {
+        int rowHeight = cellHeight + rowGap;
+        if (rowHeight <= 0)return 0;
+        int row = (y - paddingTop) / rowHeight;
+        return Math.max(0,Math.min(row,getRowCount(count) - 1));
+    }
+
+    /**
+     * 宽为match_parent或指定大小时的测量
+     * @param width 宽
+     * @param measuredHeights 每个格子以列宽、高度包裹内容测量得到的高
+     * @param count 格子数量
+     */
+    public Result measureExactly(int width, int[] measuredHeights, int count) {
+        int cellWidth = getColumnWidth(width);
+        int cellHeight = max(measuredHeights,0,count);
+        return new Result(cellWidth,cellHeight,width,getHeight(getRowCount(count),cellHeight,0));
+    }
+
+    /**
+     * 宽为wrap_content时的测量
+     * @param availableWidth 可用宽度，例如屏幕宽度
+     * @param measuredWidths 每个格子包裹内容、一行测量得到的宽
+     * @param measuredHeights 每个格子包裹内容、一行测量得到的高
+     * @param count 格子数量
+     */
+    public Result measureWrap(int availableWidth, int[] measuredWidths, int[] measuredHeights, int count) {
+        int cellWidth = Math.min(getMaxColumnWidth(availableWidth),max(measuredWidths,0,count));
+        int cellHeight = max(measuredHeights,0,count);
+        return new Result(cellWidth,cellHeight,getWrapWidth(count,cellWidth),getHeight(getRowCount(count),cellHeight,0));
+    }
+
+    /**
+     * 计算所有格子的位置
+     * @param count 格子数量
+     * @param out 输出，每个格子依次4个int：left、top、right、bottom，长度不小于count * 4
+     */
+    public void layout(int count, int cellWidth, int cellHeight, int[] out) {
+        if (out.length < count * 4){
+            throw new IllegalArgumentException("out的长度不能小于count * 4！！！");
+        }
+        for (int slot=0; slot<count; slot++){
+            int left = getCellLeft(getColumnOfSlot(slot),cellWidth);
+            int top = getRowTop(getRowOfSlot(slot),cellHeight);
+            out[slot * 4] = left;
+            out[slot * 4 + 1] = top;
+            out[slot * 4 + 2] = left + cellWidth;
+            out[slot * 4 + 3] = top + cellHeight;
+        }
+    }
+
+    //[from,to)中的最大值，没有时为0
+    public static int max(int[] values, int from, int to) {
+        int max = 0;
+        for (int i=from; i<to; i++){
+            max = Math.max(max,values[i]);
+        }
+        return max;
+    }
+
+    //测量结果
+    public static final class Result {
+        public final int cellWidth;
+        public final int cellHeight;
+        public final int width;
+        public final int height;
+
+        Result(int cellWidth, int cellHeight, int width, int height) {
+            this.cellWidth = cellWidth;
+            this.cellHeight = cellHeight;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
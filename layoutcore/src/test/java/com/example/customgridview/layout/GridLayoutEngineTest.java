@@ -0,0 +1,211 @@
+package com.example.customgridview.layout;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 网格几何计算的测试，直接在JVM上运行
+ */
+public class GridLayoutEngineTest {
+
+    //3列，列间隔10，行间隔6，padding左4上2右8下12
+    private static GridLayoutEngine newEngine() {
+        GridLayoutEngine engine = new GridLayoutEngine(3);
+        engine.setGap(10, 6);
+        engine.setPadding(4, 2, 8, 12);
+        return engine;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroColumn() {
+        new GridLayoutEngine(0);
+    }
+
+    @Test
+    public void rowsAndSlots() {
+        GridLayoutEngine engine = new GridLayoutEngine(3);
+        assertEquals(0, engine.getRowCount(0));
+        assertEquals(1, engine.getRowCount(2));
+        assertEquals(1, engine.getRowCount(3));
+        assertEquals(3, engine.getRowCount(7));
+        assertEquals(6, engine.getRowStart(2));
+        assertEquals(7, engine.getRowEnd(2, 7));
+        assertEquals(6, engine.getRowEnd(1, 7));
+        assertEquals(2, engine.getRowOfSlot(8));
+        assertEquals(2, engine.getColumnOfSlot(8));
+    }
+
+    @Test
+    public void measureExactlyWithGapsAndPadding() {
+        GridLayoutEngine engine = newEngine();
+        int[] heights = {30, 42, 35, 40, 20};
+        GridLayoutEngine.Result result = engine.measureExactly(332, heights, 5);
+        //(332 - 4 - 8 - 2 * 10) / 3
+        assertEquals(100, result.cellWidth);
+        assertEquals(42, result.cellHeight);
+        assertEquals(332, result.width);
+        //2行：42 * 2 + 6 + 2 + 12
+        assertEquals(104, result.height);
+    }
+
+    @Test
+    public void measureExactlyIgnoresMeasuredSizesBeyondCount() {
+        GridLayoutEngine engine = newEngine();
+        int[] heights = {30, 42, 99};
+        GridLayoutEngine.Result result = engine.measureExactly(332, heights, 2);
+        assertEquals(42, result.cellHeight);
+        assertEquals(42 + 2 + 12, result.height);
+    }
+
+    @Test
+    public void measureWrapUsesWidestCell() {
+        GridLayoutEngine engine = newEngine();
+        int[] widths = {50, 80, 60, 70};
+        int[] heights = {20, 24, 22, 21};
+        GridLayoutEngine.Result result = engine.measureWrap(1000, widths, heights, 4);
+        assertEquals(80, result.cellWidth);
+        assertEquals(24, result.cellHeight);
+        //3列：80 * 3 + 2 * 10 + 4 + 8
+        assertEquals(272, result.width);
+        assertEquals(24 * 2 + 6 + 2 + 12, result.height);
+    }
+
+    @Test
+    public void measureWrapLimitsCellWidthToAvailableWidth() {
+        GridLayoutEngine engine = newEngine();
+        int[] widths = {500, 80};
+        int[] heights = {20, 20};
+        GridLayoutEngine.Result result = engine.measureWrap(312, widths, heights, 2);
+        //(312 - 4 - 8) / 3
+        assertEquals(100, result.cellWidth);
+    }
+
+    @Test
+    public void measureWrapWithFewerCellsThanColumns() {
+        GridLayoutEngine engine = newEngine();
+        int[] widths = {50, 80};
+        int[] heights = {20, 24};
+        GridLayoutEngine.Result result = engine.measureWrap(1000, widths, heights, 2);
+        //只有2列：80 * 2 + 10 + 4 + 8
+        assertEquals(182, result.width);
+        assertEquals(24 + 2 + 12, result.height);
+    }
+
+    @Test
+    public void measureEmpty() {
+        GridLayoutEngine engine = newEngine();
+        GridLayoutEngine.Result wrap = engine.measureWrap(1000, new int[0], new int[0], 0);
+        assertEquals(0, wrap.cellWidth);
+        assertEquals(0, wrap.cellHeight);
+        assertEquals(0, wrap.width);
+        //没有行时没有行间隔，只有padding
+        assertEquals(2 + 12, wrap.height);
+        GridLayoutEngine.Result exactly = engine.measureExactly(332, new int[0], 0);
+        assertEquals(332, exactly.width);
+        assertEquals(2 + 12, exactly.height);
+    }
+
+    @Test
+    public void layoutPlacesCellsRowByRow() {
+        GridLayoutEngine engine = newEngine();
+        int[] out = new int[5 * 4];
+        engine.layout(5, 100, 40, out);
+        assertCell(out, 0, 4, 2, 104, 42);
+        assertCell(out, 1, 114, 2, 214, 42);
+        assertCell(out, 2, 224, 2, 324, 42);
+        //第二行
+        assertCell(out, 3, 4, 48, 104, 88);
+        assertCell(out, 4, 114, 48, 214, 88);
+    }
+
+    @Test
+    public void layoutWithFewerCellsThanColumns() {
+        GridLayoutEngine engine = newEngine();
+        int[] out = new int[2 * 4];
+        engine.layout(2, 100, 40, out);
+        assertCell(out, 0, 4, 2, 104, 42);
+        assertCell(out, 1, 114, 2, 214, 42);
+    }
+
+    @Test
+    public void layoutEmptyWritesNothing() {
+        GridLayoutEngine engine = newEngine();
+        int[] out = {-1, -1, -1, -1};
+        engine.layout(0, 100, 40, out);
+        assertArrayEquals(new int[]{-1, -1, -1, -1}, out);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void layoutRejectsShortOutput() {
+        newEngine().layout(3, 100, 40, new int[11]);
+    }
+
+    @Test
+    public void columnAt() {
+        GridLayoutEngine engine = newEngine();
+        //padding上
+        assertEquals(-1, engine.getColumnAt(3, 100));
+        assertEquals(0, engine.getColumnAt(4, 100));
+        assertEquals(0, engine.getColumnAt(103, 100));
+        //列间隔上
+        assertEquals(-1, engine.getColumnAt(104, 100));
+        assertEquals(-1, engine.getColumnAt(113, 100));
+        assertEquals(1, engine.getColumnAt(114, 100));
+        assertEquals(2, engine.getColumnAt(323, 100));
+        //超出最后一列
+        assertEquals(-1, engine.getColumnAt(324, 100));
+        assertEquals(-1, engine.getColumnAt(400, 100));
+    }
+
+    @Test
+    public void nearestColumnAt() {
+        GridLayoutEngine engine = newEngine();
+        assertEquals(0, engine.getNearestColumnAt(-50, 100));
+        assertEquals(0, engine.getNearestColumnAt(108, 100));
+        assertEquals(1, engine.getNearestColumnAt(114, 100));
+        assertEquals(2, engine.getNearestColumnAt(5000, 100));
+    }
+
+    @Test
+    public void rowAt() {
+        GridLayoutEngine engine = newEngine();
+        //7个格子3行，行高40，行间隔6，顶部padding 2
+        assertEquals(0, engine.getRowAt(-10, 40, 7));
+        assertEquals(0, engine.getRowAt(2, 40, 7));
+        assertEquals(0, engine.getRowAt(41, 40, 7));
+        //行间隔上取上面一行
+        assertEquals(0, engine.getRowAt(47, 40, 7));
+        assertEquals(1, engine.getRowAt(48, 40, 7));
+        assertEquals(2, engine.getRowAt(94, 40, 7));
+        //超出最后一行
+        assertEquals(2, engine.getRowAt(1000, 40, 7));
+    }
+
+    @Test
+    public void rowAtWhenEmpty() {
+        GridLayoutEngine engine = newEngine();
+        assertEquals(0, engine.getRowAt(100, 40, 0));
+    }
+
+    @Test
+    public void rowTopMatchesLayout() {
+        GridLayoutEngine engine = newEngine();
+        int[] out = new int[9 * 4];
+        engine.layout(9, 100, 40, out);
+        for (int slot = 0; slot < 9; slot++) {
+            int row = engine.getRowOfSlot(slot);
+            assertEquals(engine.getRowTop(row, 40), out[slot * 4 + 1]);
+            //格子内的坐标查找回同一行同一列
+            assertEquals(row, engine.getRowAt(out[slot * 4 + 1], 40, 9));
+            assertEquals(engine.getColumnOfSlot(slot), engine.getColumnAt(out[slot * 4], 100));
+        }
+    }
+
+    private static void assertCell(int[] out, int slot, int left, int top, int right, int bottom) {
+        assertEquals("left of " + slot, left, out[slot * 4]);
+        assertEquals("top of " + slot, top, out[slot * 4 + 1]);
+        assertEquals("right of " + slot, right, out[slot * 4 + 2]);
+        assertEquals("bottom of " + slot, bottom, out[slot * 4 + 3]);
+    }
+}